@@ -0,0 +1,39 @@
+package com.masacre.components;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A <code>BackgroundThreadFactory</code> creates numbered threads with the background priority, so the work of
+ * the components never competes with the main thread.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class BackgroundThreadFactory implements ThreadFactory {
+	private final String name;
+	private final AtomicInteger count = new AtomicInteger();
+
+	/**
+	 * @param name The prefix of the names of the threads, followed by their number
+	 */
+	/* default */ BackgroundThreadFactory(@NonNull final String name) {
+		this.name = name;
+	}
+
+	@Override
+	public Thread newThread(@NonNull final Runnable runnable) {
+		return new Thread(new Runnable() {
+			@Override
+			public void run() {
+				Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+				runnable.run();
+			}
+		}, name + count.incrementAndGet());
+	}
+}
@@ -0,0 +1,255 @@
+package com.masacre.components;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.image.ImageHeader;
+import com.masacre.image.ImageSizing;
+import com.masacre.model.ImageRequest;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * <p>
+ * The <code>BitmapDecoder</code> class decodes an image following an {@link ImageRequest}.
+ * The bounds come from the header of the {@link ImageSource}, the image is decoded once with the largest
+ * power of two sample size that still meets the target and finally it is scaled to the exact size when
+ * the request asks for it.
+ * </p>
+ *
+ * When a {@link BitmapPool} is given, the decode and the transformations write their pixels in pooled
+ * bitmaps and the intermediate bitmaps are given back to the pool.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class BitmapDecoder {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+
+	private BitmapDecoder() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 *
+	 * Decode an opened image, using the bounds already read from its header
+	 *
+	 * @param source The opened image
+	 * @param request The size and config that the decoded image should have
+	 * @param rotation The rotation that will be applied to the image, used to match the target
+	 *        width and height with the right axis
+	 * @param pool The pool of reusable bitmaps, or null to allocate new ones
+	 * @param metrics The metrics where the decode attempts and the scale are recorded, or null
+	 * @return The decoded image
+	 * @throws IOException if the image cannot be decoded
+	 */
+	@NonNull
+	/* default */ static Bitmap decode(@NonNull final ImageSource source, @NonNull final ImageRequest request,
+			final int rotation, @Nullable final BitmapPool pool, @Nullable final ImageMetrics metrics)
+			throws IOException {
+		final ImageHeader header = source.getHeader();
+		if (!header.hasSize()) {
+			throw new IOException("Cannot read the bounds of the image " + source.getUri());
+		}
+
+		final boolean swapAxis = ImageSizing.isAxisSwapped(rotation);
+		final int targetWidth = swapAxis ? request.getTargetHeight() : request.getTargetWidth();
+		final int targetHeight = swapAxis ? request.getTargetWidth() : request.getTargetHeight();
+		final boolean cover = request.getScaleMode() != ImageRequest.ScaleMode.FIT;
+
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = request.getConfig();
+		options.inSampleSize = ImageSizing.calculateSampleSize(header.getWidth(), header.getHeight(),
+				targetWidth, targetHeight, cover);
+		if (pool != null) {
+			options.inMutable = true;
+			options.inBitmap = pool.getForDecode(ImageSizing.getSampledSide(header.getWidth(), options.inSampleSize),
+					ImageSizing.getSampledSide(header.getHeight(), options.inSampleSize), request.getConfig(),
+					options.inSampleSize);
+		}
+
+		final Bitmap bitmap = decodeReusing(source.getFileDescriptor(), options, pool, metrics);
+		if (bitmap == null) {
+			throw new IOException("Cannot decode the image " + source.getUri());
+		}
+		if (metrics != null) {
+			metrics.recordAllocation(bitmap.getByteCount());
+		}
+		return scale(bitmap, targetWidth, targetHeight, request.getScaleMode(), pool, metrics);
+	}
+
+	/**
+	 * Estimate the memory that {@link #decode(ImageSource, ImageRequest, int, BitmapPool, ImageMetrics)} and the
+	 * following rotation hold at their peak: the sampled bitmap, twice when it is copied to scale or rotate it
+	 *
+	 * @param source The opened image
+	 * @param request The size and config that the decoded image should have
+	 * @param rotation The rotation that will be applied to the image
+	 * @return The estimated bytes
+	 */
+	/* default */ static long estimatePeakBytes(@NonNull final ImageSource source, @NonNull final ImageRequest request,
+			final int rotation) {
+		final ImageHeader header = source.getHeader();
+		if (!header.hasSize()) {
+			return 0;
+		}
+		final boolean swapAxis = ImageSizing.isAxisSwapped(rotation);
+		final int targetWidth = swapAxis ? request.getTargetHeight() : request.getTargetWidth();
+		final int targetHeight = swapAxis ? request.getTargetWidth() : request.getTargetHeight();
+		final int sampleSize = ImageSizing.calculateSampleSize(header.getWidth(), header.getHeight(),
+				targetWidth, targetHeight, request.getScaleMode() != ImageRequest.ScaleMode.FIT);
+		final long bytes = BitmapPool.getByteCount(ImageSizing.getSampledSide(header.getWidth(), sampleSize),
+				ImageSizing.getSampledSide(header.getHeight(), sampleSize), request.getConfig());
+		final boolean copied = request.getScaleMode() != ImageRequest.ScaleMode.SAMPLE_ONLY
+				|| rotation != 0 && !request.isDeferRotation();
+		return copied ? bytes * 2 : bytes;
+	}
+
+	/**
+	 * Draw a bitmap with the given matrix in a new bitmap of the given size, taken from the pool when possible
+	 *
+	 * @param source The bitmap to draw
+	 * @param matrix The transformation from the source to the new bitmap
+	 * @param width The width of the new bitmap
+	 * @param height The height of the new bitmap
+	 * @param pool The pool of reusable bitmaps, or null to allocate a new one
+	 * @return The transformed bitmap, the source is left untouched
+	 */
+	@NonNull
+	/* default */ static Bitmap transform(@NonNull final Bitmap source, @NonNull final Matrix matrix,
+			final int width, final int height, @Nullable final BitmapPool pool) {
+		final Bitmap.Config config = source.getConfig() == null ? Bitmap.Config.ARGB_8888 : source.getConfig();
+		Bitmap target = pool == null ? null : pool.get(width, height, config);
+		if (target == null) {
+			target = Bitmap.createBitmap(width, height, config);
+		} else {
+			target.eraseColor(Color.TRANSPARENT);
+		}
+		target.setHasAlpha(source.hasAlpha());
+		new Canvas(target).drawBitmap(source, matrix, new Paint(Paint.FILTER_BITMAP_FLAG));
+		return target;
+	}
+
+	/**
+	 * Create the matrix that rotates an image clockwise and moves it back to the origin, so the rotated
+	 * image fills a bitmap whose size is given by {@link ImageSizing#getRotatedWidth(int, int, int)}
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param rotation The clockwise degrees, a multiple of 90
+	 * @return The rotation matrix
+	 */
+	@NonNull
+	/* default */ static Matrix createRotationMatrix(final int width, final int height, final int rotation) {
+		final Matrix matrix = new Matrix();
+		matrix.postRotate(rotation);
+		final RectF bounds = new RectF(0, 0, width, height);
+		matrix.mapRect(bounds);
+		matrix.postTranslate(-bounds.left, -bounds.top);
+		return matrix;
+	}
+
+	/**
+	 * Give a bitmap that is no longer used to the pool, or recycle it if there is no pool
+	 *
+	 * @param bitmap The bitmap that is no longer used
+	 * @param pool The pool of reusable bitmaps, or null
+	 */
+	/* default */ static void release(@NonNull final Bitmap bitmap, @Nullable final BitmapPool pool) {
+		if (pool == null) {
+			bitmap.recycle();
+		} else {
+			pool.put(bitmap);
+		}
+	}
+
+	@Nullable
+	private static Bitmap decodeReusing(@NonNull final FileDescriptor fileDescriptor,
+			@NonNull final BitmapFactory.Options options, @Nullable final BitmapPool pool,
+			@Nullable final ImageMetrics metrics) {
+		final Bitmap reusedBitmap = options.inBitmap;
+		try {
+			final Bitmap bitmap = decodeAttempt(fileDescriptor, options, metrics);
+			if (bitmap != null || reusedBitmap == null) {
+				return bitmap;
+			}
+		} catch (final IllegalArgumentException e) {
+			if (reusedBitmap == null) {
+				throw e;
+			}
+		}
+
+		// The pooled bitmap cannot hold this image, so it goes back and a new one is allocated
+		pool.put(reusedBitmap);
+		options.inBitmap = null;
+		if (metrics != null) {
+			metrics.recordRetry();
+		}
+		return decodeAttempt(fileDescriptor, options, metrics);
+	}
+
+	@Nullable
+	private static Bitmap decodeAttempt(@NonNull final FileDescriptor fileDescriptor,
+			@NonNull final BitmapFactory.Options options, @Nullable final ImageMetrics metrics) {
+		if (metrics == null) {
+			return BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+		}
+		final long start = ImageMetrics.now();
+		Bitmap bitmap = null;
+		try {
+			bitmap = BitmapFactory.decodeFileDescriptor(fileDescriptor, null, options);
+			return bitmap;
+		} finally {
+			metrics.record(ImageMetrics.Stage.DECODE, start, bitmap == null ? 0 : bitmap.getByteCount());
+		}
+	}
+
+	@NonNull
+	private static Bitmap scale(@NonNull final Bitmap bitmap, final int targetWidth, final int targetHeight,
+			@NonNull final ImageRequest.ScaleMode scaleMode, @Nullable final BitmapPool pool,
+			@Nullable final ImageMetrics metrics) {
+		if (scaleMode == ImageRequest.ScaleMode.SAMPLE_ONLY) {
+			return bitmap;
+		}
+
+		final int width = bitmap.getWidth();
+		final int height = bitmap.getHeight();
+		final boolean cover = scaleMode == ImageRequest.ScaleMode.CROP;
+		final float scale = Math.min(1f, ImageSizing.calculateScale(width, height, targetWidth, targetHeight, cover));
+
+		final int cropWidth;
+		final int cropHeight;
+		if (cover) {
+			cropWidth = Math.min(width, Math.round(targetWidth / scale));
+			cropHeight = Math.min(height, Math.round(targetHeight / scale));
+		} else {
+			cropWidth = width;
+			cropHeight = height;
+		}
+		if (scale == 1f && cropWidth == width && cropHeight == height) {
+			return bitmap;
+		}
+
+		final long start = metrics == null ? 0 : ImageMetrics.now();
+		final Matrix matrix = new Matrix();
+		matrix.setTranslate(-(width - cropWidth) / 2f, -(height - cropHeight) / 2f);
+		matrix.postScale(scale, scale);
+		final Bitmap scaled = transform(bitmap, matrix, Math.max(1, Math.round(cropWidth * scale)),
+				Math.max(1, Math.round(cropHeight * scale)), pool);
+		if (metrics != null) {
+			metrics.record(ImageMetrics.Stage.SCALE, start, scaled.getByteCount());
+			metrics.recordAllocation(scaled.getByteCount());
+			metrics.recordRelease(bitmap.getByteCount());
+		}
+		release(bitmap, pool);
+		return scaled;
+	}
+}
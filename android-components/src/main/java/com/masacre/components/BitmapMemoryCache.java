@@ -0,0 +1,198 @@
+package com.masacre.components;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import com.masacre.model.BitmapImage;
+import com.masacre.model.ImageRequest;
+
+/**
+ * <p>
+ * A <code>BitmapMemoryCache</code> keeps the last decoded {@link BitmapImage} in memory, so picking
+ * the same image again does not decode it from scratch. The entries are keyed by the uri of the image
+ * and the {@link ImageRequest} used to decode it, and the cache size is measured in bytes.
+ * </p>
+ *
+ * The cached bitmaps are shared between every caller that gets them, so they must not be modified.
+ * The cache holds its own reference of each {@link BitmapImage} and releases it when the image is removed,
+ * and every image returned by {@link #get(Uri, ImageRequest)} is acquired for the caller.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setMemoryCache(BitmapMemoryCache)
+ */
+public class BitmapMemoryCache {
+	private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+	private static final int MEMORY_CLASS_FRACTION = 8;
+	private static final int HALF = 2;
+	private static final int THREE_QUARTERS_NUMERATOR = 3;
+	private static final int THREE_QUARTERS_DENOMINATOR = 4;
+
+	private final LruCache<Key, BitmapImage> cache;
+
+	/**
+	 * Create a cache that uses an eighth of the memory class of the application
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 */
+	public BitmapMemoryCache(@NonNull final Context context) {
+		this(getDefaultMaxBytes(context));
+	}
+
+	/**
+	 * Create a cache with the given budget
+	 *
+	 * @param maxBytes The maximum amount of bytes of the cached bitmaps
+	 */
+	public BitmapMemoryCache(final int maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("The cache size must be positive");
+		}
+		this.cache = new LruCache<Key, BitmapImage>(maxBytes) {
+			@Override
+			protected int sizeOf(final Key key, final BitmapImage value) {
+				return value.getBitmap().getByteCount();
+			}
+
+			@Override
+			protected void entryRemoved(final boolean evicted, final Key key, final BitmapImage oldValue,
+					final BitmapImage newValue) {
+				oldValue.release();
+			}
+		};
+	}
+
+	/**
+	 * Get the default budget of the cache, an eighth of the memory class of the application
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @return The default amount of bytes
+	 */
+	public static int getDefaultMaxBytes(@NonNull final Context context) {
+		final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+		return activityManager.getMemoryClass() * BYTES_PER_MEGABYTE / MEMORY_CLASS_FRACTION;
+	}
+
+	/**
+	 * Get the image decoded from the given uri with the given request
+	 *
+	 * @param uri The uri path of the image
+	 * @param request The request used to decode the image
+	 * @return The cached image acquired for the caller, or null if it is not in the cache
+	 */
+	@Nullable
+	public synchronized BitmapImage get(@NonNull final Uri uri, @NonNull final ImageRequest request) {
+		final BitmapImage image = cache.get(new Key(uri, request));
+		return image == null ? null : image.acquire();
+	}
+
+	/**
+	 * Add an image to the cache
+	 *
+	 * @param request The request used to decode the image
+	 * @param image The decoded image
+	 */
+	public synchronized void put(@NonNull final ImageRequest request, @NonNull final BitmapImage image) {
+		cache.put(new Key(image.getUri(), request), image.acquire());
+	}
+
+	/**
+	 * Remove every image of the cache
+	 */
+	public synchronized void evictAll() {
+		cache.evictAll();
+	}
+
+	/**
+	 * Release memory according to the level given by {@link ComponentCallbacks2#onTrimMemory(int)}.
+	 * Call it from the same method of your application or activity.
+	 *
+	 * @param level The context of the trim, giving a hint of the amount of trimming the application may like to perform
+	 */
+	public synchronized void onTrimMemory(final int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			cache.evictAll();
+		} else if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+			cache.trimToSize(cache.maxSize() / HALF);
+		} else {
+			cache.trimToSize(cache.maxSize() * THREE_QUARTERS_NUMERATOR / THREE_QUARTERS_DENOMINATOR);
+		}
+	}
+
+	/**
+	 * @return The amount of bytes of the cached bitmaps
+	 */
+	public int getSize() {
+		return cache.size();
+	}
+
+	/**
+	 * @return The maximum amount of bytes of the cached bitmaps
+	 */
+	public int getMaxSize() {
+		return cache.maxSize();
+	}
+
+	/**
+	 * @return The number of times that a requested image was in the cache
+	 */
+	public int getHitCount() {
+		return cache.hitCount();
+	}
+
+	/**
+	 * @return The number of times that a requested image was not in the cache
+	 */
+	public int getMissCount() {
+		return cache.missCount();
+	}
+
+	/**
+	 * @return The number of images that were removed to keep the cache under its budget
+	 */
+	public int getEvictionCount() {
+		return cache.evictionCount();
+	}
+
+	@Override
+	public String toString() {
+		return "BitmapMemoryCache{size=" + getSize() + ", maxSize=" + getMaxSize() + ", hits=" + getHitCount()
+				+ ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "}";
+	}
+
+	private static final class Key {
+		private final Uri uri;
+		private final ImageRequest request;
+
+		/* default */ Key(@NonNull final Uri uri, @NonNull final ImageRequest request) {
+			this.uri = uri;
+			this.request = request;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key that = (Key) o;
+			return uri.equals(that.uri) && request.equals(that.request);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * uri.hashCode() + request.hashCode();
+		}
+	}
+}
@@ -0,0 +1,280 @@
+package com.masacre.components;
+
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.image.BucketPool;
+import com.masacre.model.BitmapImage;
+
+/**
+ * <p>
+ * A <code>BitmapPool</code> keeps the bitmaps that are no longer used, so the next decode can write
+ * its pixels in one of them through {@link android.graphics.BitmapFactory.Options#inBitmap} instead of
+ * allocating a new one.
+ * </p>
+ *
+ * The bitmaps are grouped in buckets by size and config. Since {@link Build.VERSION_CODES#KITKAT}
+ * a bitmap can be reused for any smaller image, before that only the exact size can be reused.
+ * When the pool is over its budget the bitmaps of the least recently used bucket are recycled.
+ * The bookkeeping is done by a {@link BucketPool}.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setBitmapPool(BitmapPool)
+ */
+public class BitmapPool implements BitmapImage.Recycler {
+	private static final int MAX_SIZE_MULTIPLE = 2;
+	private static final int HALF = 2;
+	private static final int BYTES_PER_PIXEL_ARGB_8888 = 4;
+	private static final int BYTES_PER_PIXEL_16_BITS = 2;
+
+	private final long maxBytes;
+	private final BucketPool<Key, Bitmap> buckets = new BitmapBuckets();
+	private long requestCount;
+	private long hitCount;
+
+	/**
+	 * Create a pool with the given budget
+	 *
+	 * @param maxBytes The maximum amount of bytes of the pooled bitmaps
+	 */
+	public BitmapPool(final long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("The pool size must be positive");
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Calculate the bytes used by an image of the given size and config
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param config The pixel configuration of the image
+	 * @return The amount of bytes
+	 */
+	public static int getByteCount(final int width, final int height, @Nullable final Bitmap.Config config) {
+		final int bytesPerPixel;
+		if (config == Bitmap.Config.ALPHA_8) {
+			bytesPerPixel = 1;
+		} else if (config == Bitmap.Config.RGB_565 || config == Bitmap.Config.ARGB_4444) {
+			bytesPerPixel = BYTES_PER_PIXEL_16_BITS;
+		} else {
+			bytesPerPixel = BYTES_PER_PIXEL_ARGB_8888;
+		}
+		return width * height * bytesPerPixel;
+	}
+
+	/**
+	 * Get a pooled bitmap with exactly the given size and config. Its content is undefined.
+	 *
+	 * @param width The width of the bitmap
+	 * @param height The height of the bitmap
+	 * @param config The pixel configuration of the bitmap
+	 * @return A bitmap removed from the pool, or null if there is none that can be used
+	 */
+	@Nullable
+	public synchronized Bitmap get(final int width, final int height, @NonNull final Bitmap.Config config) {
+		requestCount++;
+		Bitmap bitmap = buckets.poll(new Key(width, height, config));
+		if (bitmap == null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			bitmap = buckets.pollLarger(getByteCount(width, height, config), MAX_SIZE_MULTIPLE);
+			if (bitmap != null) {
+				reconfigure(bitmap, width, height, config);
+			}
+		}
+		if (bitmap != null) {
+			hitCount++;
+		}
+		return bitmap;
+	}
+
+	/**
+	 * Get a pooled bitmap where an image of the given size can be decoded
+	 *
+	 * @param width The width of the decoded image
+	 * @param height The height of the decoded image
+	 * @param config The pixel configuration of the decoded image
+	 * @param sampleSize The sample size of the decode
+	 * @return A bitmap removed from the pool, or null if there is none that can be used
+	 */
+	@Nullable
+	/* default */ synchronized Bitmap getForDecode(final int width, final int height,
+			@NonNull final Bitmap.Config config, final int sampleSize) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			requestCount++;
+			final Bitmap bitmap = buckets.pollLarger(getByteCount(width, height, config), MAX_SIZE_MULTIPLE);
+			if (bitmap != null) {
+				hitCount++;
+			}
+			return bitmap;
+		}
+		// Before KitKat the decoded image must have the same size and cannot be sampled
+		return sampleSize == 1 ? get(width, height, config) : null;
+	}
+
+	/**
+	 * Add a bitmap to the pool. If it cannot be pooled it is recycled.
+	 *
+	 * @param bitmap The bitmap that is no longer used
+	 */
+	public synchronized void put(@NonNull final Bitmap bitmap) {
+		final int byteCount = getAllocationByteCount(bitmap);
+		if (bitmap.isRecycled() || !bitmap.isMutable() || bitmap.getConfig() == null || byteCount > maxBytes) {
+			bitmap.recycle();
+			return;
+		}
+		buckets.offer(new Key(bitmap.getWidth(), bitmap.getHeight(), bitmap.getConfig()), bitmap);
+		buckets.trimToSize(maxBytes);
+	}
+
+	@Override
+	public void recycle(@NonNull final Bitmap bitmap) {
+		put(bitmap);
+	}
+
+	/**
+	 * Recycle the least recently used bitmaps until the pool is under the given size
+	 *
+	 * @param size The maximum amount of bytes that the pool can keep
+	 */
+	public synchronized void trimToSize(final long size) {
+		buckets.trimToSize(size);
+	}
+
+	/**
+	 * Recycle every pooled bitmap
+	 */
+	public void clear() {
+		trimToSize(0);
+	}
+
+	/**
+	 * Release memory according to the level given by {@link ComponentCallbacks2#onTrimMemory(int)}.
+	 * Call it from the same method of your application or activity.
+	 *
+	 * @param level The context of the trim, giving a hint of the amount of trimming the application may like to perform
+	 */
+	public void onTrimMemory(final int level) {
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN
+				|| level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			clear();
+		} else {
+			trimToSize(maxBytes / HALF);
+		}
+	}
+
+	/**
+	 * @return The amount of bytes of the pooled bitmaps
+	 */
+	public synchronized long getBytesHeld() {
+		return buckets.getSize();
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * @return The number of times that a bitmap was requested
+	 */
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	/**
+	 * @return The number of times that a pooled bitmap was reused
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * @return The number of bitmaps that were recycled to keep the pool under its budget
+	 */
+	public synchronized long getEvictionCount() {
+		return buckets.getEvictionCount();
+	}
+
+	/**
+	 * @return The fraction of the requests that reused a pooled bitmap, between 0 and 1
+	 */
+	public synchronized float getReuseRate() {
+		return requestCount == 0 ? 0f : (float) hitCount / requestCount;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "BitmapPool{bytesHeld=" + buckets.getSize() + ", maxBytes=" + maxBytes + ", requests=" + requestCount
+				+ ", hits=" + hitCount + ", evictions=" + buckets.getEvictionCount() + "}";
+	}
+
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static void reconfigure(@NonNull final Bitmap bitmap, final int width, final int height,
+			@NonNull final Bitmap.Config config) {
+		bitmap.reconfigure(width, height, config);
+	}
+
+	private static int getAllocationByteCount(@NonNull final Bitmap bitmap) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+			return getAllocationByteCountKitKat(bitmap);
+		}
+		return bitmap.getByteCount();
+	}
+
+	@TargetApi(Build.VERSION_CODES.KITKAT)
+	private static int getAllocationByteCountKitKat(@NonNull final Bitmap bitmap) {
+		return bitmap.getAllocationByteCount();
+	}
+
+	/**
+	 * The evicted bitmaps are recycled, nothing else references them
+	 */
+	private static final class BitmapBuckets extends BucketPool<Key, Bitmap> {
+		@Override
+		protected int sizeOf(final Bitmap value) {
+			return getAllocationByteCount(value);
+		}
+
+		@Override
+		protected void onEvicted(final Bitmap value) {
+			value.recycle();
+		}
+	}
+
+	private static final class Key {
+		private final int width;
+		private final int height;
+		private final Bitmap.Config config;
+
+		/* default */ Key(final int width, final int height, @NonNull final Bitmap.Config config) {
+			this.width = width;
+			this.height = height;
+			this.config = config;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (this == o) {
+				return true;
+			}
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key that = (Key) o;
+			return width == that.width && height == that.height && config == that.config;
+		}
+
+		@Override
+		public int hashCode() {
+			int result = width;
+			result = 31 * result + height;
+			result = 31 * result + config.hashCode();
+			return result;
+		}
+	}
+}
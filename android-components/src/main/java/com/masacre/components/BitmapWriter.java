@@ -0,0 +1,82 @@
+package com.masacre.components;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>
+ * The <code>BitmapWriter</code> class encodes bitmaps to files through a buffered stream and syncs
+ * them to the disk before they are considered written.
+ * </p>
+ *
+ * {@link #write(File, Bitmap, Bitmap.CompressFormat, int)} writes a temp file next to the target and renames
+ * it when it is complete, so a crash or a failed encode never leaves a partial image in place of the old one.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class BitmapWriter {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private BitmapWriter() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Encode a bitmap and replace the given file with it atomically
+	 *
+	 * @param file The file where the image is saved
+	 * @param bitmap The image data
+	 * @param format The compress format
+	 * @param quality The quality of the lossy formats
+	 * @return The amount of bytes of the saved file
+	 * @throws IOException if the file cannot be written or renamed
+	 */
+	/* default */ static long write(@NonNull final File file, @NonNull final Bitmap bitmap,
+			@NonNull final Bitmap.CompressFormat format, final int quality) throws IOException {
+		// The thread id keeps concurrent writes of the same file apart
+		final File tempFile = new File(file.getPath() + "." + Thread.currentThread().getId() + TEMP_FILE_SUFFIX);
+		try {
+			compress(tempFile, bitmap, format, quality);
+			if (!tempFile.renameTo(file)) {
+				throw new IOException("Cannot rename " + tempFile + " to " + file);
+			}
+		} finally {
+			if (tempFile.exists() && !tempFile.delete()) {
+				tempFile.deleteOnExit();
+			}
+		}
+		return file.length();
+	}
+
+	/**
+	 * Encode a bitmap in the given file, through a buffered stream that is synced before it is closed
+	 *
+	 * @param file The file where the image is written
+	 * @param bitmap The image data
+	 * @param format The compress format
+	 * @param quality The quality of the lossy formats
+	 * @throws IOException if the file cannot be written
+	 */
+	/* default */ static void compress(@NonNull final File file, @NonNull final Bitmap bitmap,
+			@NonNull final Bitmap.CompressFormat format, final int quality) throws IOException {
+		final FileOutputStream fileOutputStream = new FileOutputStream(file);
+		try {
+			final BufferedOutputStream out = new BufferedOutputStream(fileOutputStream, BUFFER_SIZE);
+			if (!bitmap.compress(format, quality, out)) {
+				throw new IOException("Cannot compress the image");
+			}
+			out.flush();
+			fileOutputStream.getFD().sync();
+		} finally {
+			fileOutputStream.close();
+		}
+	}
+}
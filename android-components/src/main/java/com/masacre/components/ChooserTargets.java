@@ -0,0 +1,106 @@
+package com.masacre.components;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ResolveInfo;
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * The <code>ChooserTargets</code> class keeps the packages that handle each pick intent, so the chooser
+ * is created without asking the {@link android.content.pm.PackageManager} every time it is opened.
+ * </p>
+ *
+ * The packages are resolved on the first use or when they are prewarmed, and they are forgotten when
+ * a package is added, removed or changed.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class ChooserTargets {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final String PACKAGE_SCHEME = "package";
+
+	private static final Map<String, List<String>> PACKAGES = new HashMap<>();
+	private static int generation;
+	private static boolean receiverRegistered;
+
+	private ChooserTargets() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Get the packages that handle an intent, resolving them if they are not known yet
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param key The key of the intent, equal for every intent that resolves to the same activities
+	 * @param intent The intent to resolve
+	 * @return The package names, that must not be modified
+	 */
+	@NonNull
+	/* default */ static List<String> getPackages(@NonNull final Context context, @NonNull final String key,
+			@NonNull final Intent intent) {
+		final int queryGeneration;
+		synchronized (ChooserTargets.class) {
+			registerReceiver(context);
+			final List<String> packages = PACKAGES.get(key);
+			if (packages != null) {
+				return packages;
+			}
+			queryGeneration = generation;
+		}
+
+		// The binder call runs outside the lock, a concurrent invalidation discards its result
+		final List<ResolveInfo> resolveInfos = context.getPackageManager().queryIntentActivities(intent, 0);
+		final List<String> packages = new ArrayList<>(resolveInfos.size());
+		for (final ResolveInfo resolveInfo : resolveInfos) {
+			packages.add(resolveInfo.activityInfo.packageName);
+		}
+		final List<String> unmodifiablePackages = Collections.unmodifiableList(packages);
+		synchronized (ChooserTargets.class) {
+			if (queryGeneration == generation) {
+				PACKAGES.put(key, unmodifiablePackages);
+			}
+		}
+		return unmodifiablePackages;
+	}
+
+	/**
+	 * Forget every resolved package
+	 */
+	/* default */ static synchronized void invalidate() {
+		PACKAGES.clear();
+		generation++;
+	}
+
+	private static void registerReceiver(@NonNull final Context context) {
+		if (receiverRegistered) {
+			return;
+		}
+		final IntentFilter filter = new IntentFilter();
+		filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+		filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+		filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+		filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+		filter.addDataScheme(PACKAGE_SCHEME);
+		// The application context lives as long as the cache, so the receiver is never unregistered
+		context.getApplicationContext().registerReceiver(new PackageChangeReceiver(), filter);
+		receiverRegistered = true;
+	}
+
+	private static final class PackageChangeReceiver extends BroadcastReceiver {
+		@Override
+		public void onReceive(final Context context, final Intent intent) {
+			invalidate();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.masacre.components;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A <code>ClickableListAdapter</code> is a {@link ClickableRecyclerView.ClickableAdapter} backed by a list that is
+ * replaced as a whole with {@link #submitList(List)}. The difference between the shown list and the new one is
+ * calculated in a background thread and notified in the main thread as coalesced range insertions, removals and
+ * changes, so only the changed items are bound again and the item animations run.
+ * </p>
+ *
+ * When only part of an item changes, implement a {@link PayloadItemCallback} so the change is notified with a
+ * payload and the item is bound partially.
+ *
+ * When a list is submitted while the difference of a previous one is still running, the previous one is dropped
+ * and never shown. The submitted list is copied, the caller may modify it afterwards.
+ *
+ * @param <T> The type of the items
+ * @param <V> The view holder type
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ItemCallback
+ */
+public abstract class ClickableListAdapter<T, V extends ClickableRecyclerView.ClickableViewHolder>
+		extends ClickableRecyclerView.ClickableAdapter<V> {
+	private static final String THREAD_NAME = "ClickableListAdapter #";
+	private static final long KEEP_ALIVE_SECONDS = 30L;
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	private static Executor diffExecutor;
+	private static ThreadPoolExecutor defaultDiffExecutor;
+
+	private final ItemCallback<T> itemCallback;
+	private List<T> items = Collections.emptyList();
+	private volatile int generation;
+
+	/**
+	 * Create an empty adapter
+	 *
+	 * @param itemCallback The identity and content comparison of the items
+	 */
+	protected ClickableListAdapter(@NonNull final ItemCallback<T> itemCallback) {
+		this.itemCallback = itemCallback;
+	}
+
+	/**
+	 * Replace the executor where the differences are calculated. By default a single background thread is used.
+	 *
+	 * @param executor The executor to use, or null to go back to the default one
+	 */
+	public static synchronized void setDiffExecutor(@Nullable final Executor executor) {
+		diffExecutor = executor;
+	}
+
+	@NonNull
+	private static synchronized Executor getDiffExecutor() {
+		if (diffExecutor == null) {
+			if (defaultDiffExecutor == null) {
+				defaultDiffExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(THREAD_NAME));
+				defaultDiffExecutor.allowCoreThreadTimeOut(true);
+			}
+			diffExecutor = defaultDiffExecutor;
+		}
+		return diffExecutor;
+	}
+
+	/**
+	 * Show a new list. It must be called from the main thread.
+	 *
+	 * @param list The new items, or null to remove every item
+	 */
+	public void submitList(@Nullable final List<T> list) {
+		submitList(list, null);
+	}
+
+	/**
+	 * Show a new list. It must be called from the main thread.
+	 *
+	 * @param list The new items, or null to remove every item
+	 * @param commitCallback Run in the main thread once the list is shown, it is not run if the list is replaced
+	 *        by a newer one before
+	 */
+	public void submitList(@Nullable final List<T> list, @Nullable final Runnable commitCallback) {
+		final int submitted = ++generation;
+		if (list == items) {
+			runCallback(commitCallback);
+			return;
+		}
+
+		final List<T> previous = items;
+		if (list == null || list.isEmpty()) {
+			items = Collections.emptyList();
+			if (!previous.isEmpty()) {
+				notifyItemRangeRemoved(0, previous.size());
+			}
+			runCallback(commitCallback);
+			return;
+		}
+
+		final List<T> next = Collections.unmodifiableList(new ArrayList<>(list));
+		if (previous.isEmpty()) {
+			items = next;
+			notifyItemRangeInserted(0, next.size());
+			runCallback(commitCallback);
+			return;
+		}
+		getDiffExecutor().execute(new DiffJob(submitted, previous, next, commitCallback));
+	}
+
+	/**
+	 * @return The shown items, that cannot be modified
+	 */
+	@NonNull
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * @param position The position of the item in the adapter
+	 * @return The shown item
+	 */
+	public T getItem(final int position) {
+		return items.get(position);
+	}
+
+	@Override
+	public int getItemCount() {
+		return items.size();
+	}
+
+	private static void runCallback(@Nullable final Runnable callback) {
+		if (callback != null) {
+			callback.run();
+		}
+	}
+
+	/**
+	 *
+	 * Interface definition for the comparison of the items of two lists
+	 *
+	 * @param <T> The type of the items
+	 *
+	 */
+	public interface ItemCallback<T> {
+		/**
+		 *
+		 * Called to know whether two items represent the same object, for example if they have the same id
+		 *
+		 * @param oldItem The item of the shown list
+		 * @param newItem The item of the new list
+		 * @return true if both are the same item
+		 */
+		boolean areItemsTheSame(final T oldItem, final T newItem);
+
+		/**
+		 *
+		 * Called for the same items to know whether the item must be bound again
+		 *
+		 * @param oldItem The item of the shown list
+		 * @param newItem The item of the new list
+		 * @return true if both look the same
+		 */
+		boolean areContentsTheSame(final T oldItem, final T newItem);
+	}
+
+	/**
+	 *
+	 * Interface definition for the comparison of the items of two lists that also describes what changed in an
+	 * item, so it is bound partially by a {@link ClickableRecyclerView.PayloadBinder}
+	 *
+	 * @param <T> The type of the items
+	 *
+	 */
+	public interface PayloadItemCallback<T> extends ItemCallback<T> {
+		/**
+		 *
+		 * Called for the same items whose contents are not the same. The consecutive changes with equal payloads
+		 * are notified together.
+		 *
+		 * @param oldItem The item of the shown list
+		 * @param newItem The item of the new list
+		 * @return The payload of the change, or null to bind the item as a whole
+		 */
+		@Nullable
+		Object getChangePayload(final T oldItem, final T newItem);
+	}
+
+	/**
+	 * Calculates the difference in background and shows the new list in the main thread, unless a newer list
+	 * was submitted meanwhile
+	 */
+	private final class DiffJob implements Runnable {
+		private final int submitted;
+		private final List<T> previous;
+		private final List<T> next;
+		private final Runnable commitCallback;
+		private ListDiffer.Diff diff;
+
+		/* default */ DiffJob(final int submitted, @NonNull final List<T> previous, @NonNull final List<T> next,
+				@Nullable final Runnable commitCallback) {
+			this.submitted = submitted;
+			this.previous = previous;
+			this.next = next;
+			this.commitCallback = commitCallback;
+		}
+
+		@Override
+		public void run() {
+			if (submitted != generation) {
+				return;
+			}
+			if (diff == null) {
+				diff = ListDiffer.calculate(previous, next, itemCallback);
+				MAIN_HANDLER.post(this);
+				return;
+			}
+			// Back in the main thread
+			items = next;
+			if (diff.hasChanges()) {
+				diff.dispatchTo(ClickableListAdapter.this);
+			}
+			runCallback(commitCallback);
+		}
+	}
+}
@@ -0,0 +1,371 @@
+package com.masacre.components;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A <code>ClickablePagedAdapter</code> is a {@link ClickableRecyclerView.ClickableAdapter} that shows a dataset too
+ * big to be held in memory. The items are loaded in fixed size pages from a {@link PageDataSource} in a background
+ * thread, only around the last bound position: the next pages are loaded once the position gets within the
+ * prefetch distance of them, and the pages farther than the keep distance are dropped.
+ * </p>
+ *
+ * The positions of the items that are not loaded are placeholders: {@link #getItem(int)} gives null for them and
+ * the view holder shows an empty state until the page arrives. So the positions never move while scrolling and the
+ * memory stays flat no matter how far the user scrolls. When the data source cannot count its items, the adapter
+ * grows a page at a time until a page comes back incomplete.
+ *
+ * The first page is loaded when the adapter is attached to a recycler view, {@link #refresh()} loads the dataset
+ * again. It is also the way to retry a count that failed, see {@link #onLoadError(boolean, Exception)}.
+ *
+ * @param <T> The type of the items
+ * @param <V> The view holder type
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see PageDataSource
+ */
+public abstract class ClickablePagedAdapter<T, V extends ClickableRecyclerView.ClickableViewHolder>
+		extends ClickableRecyclerView.ClickableAdapter<V> {
+	/**
+	 * Value given by {@link PageDataSource#loadCount()} when the amount of items is not known
+	 */
+	public static final int COUNT_UNKNOWN = -1;
+	public static final int DEFAULT_PAGE_SIZE = 20;
+
+	private static final String TAG = "ClickablePagedAdapter";
+	private static final String THREAD_NAME = "ClickablePagedAdapter #";
+	private static final int DEFAULT_KEPT_PAGES = 4;
+	private static final long KEEP_ALIVE_SECONDS = 30L;
+	private static final int COUNT_PAGE = -1;
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	private static Executor loadExecutor;
+	private static ThreadPoolExecutor defaultLoadExecutor;
+
+	private final PageDataSource<T> dataSource;
+	private final int pageSize;
+	private final int prefetchDistance;
+	private final int keepDistance;
+	private final SparseArray<List<T>> pages = new SparseArray<>();
+	private final SparseBooleanArray loadingPages = new SparseBooleanArray();
+	private int count;
+	private boolean countKnown;
+	private boolean endReached;
+	private boolean started;
+	private boolean refreshing;
+	private int lastPosition;
+	private int generation;
+
+	/**
+	 * Create an adapter with pages of {@link #DEFAULT_PAGE_SIZE} items, that loads the next page one page ahead
+	 * and keeps four pages on each side of the last bound position
+	 *
+	 * @param dataSource The source of the pages
+	 */
+	protected ClickablePagedAdapter(@NonNull final PageDataSource<T> dataSource) {
+		this(dataSource, DEFAULT_PAGE_SIZE, DEFAULT_PAGE_SIZE, DEFAULT_KEPT_PAGES * DEFAULT_PAGE_SIZE);
+	}
+
+	/**
+	 * Create an adapter
+	 *
+	 * @param dataSource The source of the pages
+	 * @param pageSize The amount of items of each page
+	 * @param prefetchDistance The amount of items between the last bound position and a page that is not loaded
+	 *        when the page starts to load
+	 * @param keepDistance The amount of items between the last bound position and a loaded page when the page is
+	 *        dropped. It must be at least the prefetch distance plus a page, so a page is not dropped right after
+	 *        it is loaded.
+	 */
+	protected ClickablePagedAdapter(@NonNull final PageDataSource<T> dataSource, final int pageSize,
+			final int prefetchDistance, final int keepDistance) {
+		if (pageSize <= 0 || prefetchDistance < 0) {
+			throw new IllegalArgumentException("The page size must be positive and the prefetch distance cannot "
+					+ "be negative");
+		}
+		if (keepDistance < prefetchDistance + pageSize) {
+			throw new IllegalArgumentException("The keep distance must be at least the prefetch distance plus "
+					+ "a page");
+		}
+		this.dataSource = dataSource;
+		this.pageSize = pageSize;
+		this.prefetchDistance = prefetchDistance;
+		this.keepDistance = keepDistance;
+	}
+
+	/**
+	 * Replace the executor where the pages are loaded. By default a single background thread is used, so the
+	 * pages are loaded in order.
+	 *
+	 * @param executor The executor to use, or null to go back to the default one
+	 */
+	public static synchronized void setLoadExecutor(@Nullable final Executor executor) {
+		loadExecutor = executor;
+	}
+
+	@NonNull
+	private static synchronized Executor getLoadExecutor() {
+		if (loadExecutor == null) {
+			if (defaultLoadExecutor == null) {
+				defaultLoadExecutor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+						new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(THREAD_NAME));
+				defaultLoadExecutor.allowCoreThreadTimeOut(true);
+			}
+			loadExecutor = defaultLoadExecutor;
+		}
+		return loadExecutor;
+	}
+
+	@Override
+	public void onAttachedToRecyclerView(final RecyclerView recyclerView) {
+		super.onAttachedToRecyclerView(recyclerView);
+		if (!started) {
+			refresh();
+		}
+	}
+
+	/**
+	 * Count and load the dataset again. The loaded items keep being shown until the new count arrives. It must be
+	 * called from the main thread.
+	 */
+	public void refresh() {
+		started = true;
+		refreshing = true;
+		generation++;
+		loadingPages.clear();
+		getLoadExecutor().execute(new LoadJob(generation, COUNT_PAGE));
+	}
+
+	/**
+	 * Get an item and load the pages around it. Call it when the item is bound.
+	 *
+	 * @param position The position of the item in the adapter
+	 * @return The item, or null if its page is not loaded yet
+	 */
+	@Nullable
+	public T getItem(final int position) {
+		loadAround(position);
+		return peekItem(position);
+	}
+
+	/**
+	 * Get an item without loading anything
+	 *
+	 * @param position The position of the item in the adapter
+	 * @return The item, or null if its page is not loaded yet
+	 */
+	@Nullable
+	public T peekItem(final int position) {
+		final List<T> page = pages.get(position / pageSize);
+		final int index = position % pageSize;
+		return page == null || index >= page.size() ? null : page.get(index);
+	}
+
+	/**
+	 * @param position The position of the item in the adapter
+	 * @return true if the item is not loaded yet
+	 */
+	public boolean isPlaceholder(final int position) {
+		return peekItem(position) == null;
+	}
+
+	@Override
+	public int getItemCount() {
+		return count;
+	}
+
+	/**
+	 * Load the pages within the prefetch distance of a position and drop the ones beyond the keep distance
+	 *
+	 * @param position The position of the item in the adapter
+	 */
+	public void loadAround(final int position) {
+		lastPosition = position;
+		if (refreshing) {
+			return;
+		}
+		final boolean bounded = countKnown || endReached;
+		if (bounded && count == 0) {
+			return;
+		}
+		final int firstPage = Math.max(0, position - prefetchDistance) / pageSize;
+		// Without a count only the page right after the loaded items can be requested
+		final int lastPage = Math.min((position + prefetchDistance) / pageSize,
+				bounded ? (count - 1) / pageSize : count / pageSize);
+		for (int page = firstPage; page <= lastPage; page++) {
+			if (pages.get(page) == null && !loadingPages.get(page)) {
+				loadingPages.put(page, true);
+				getLoadExecutor().execute(new LoadJob(generation, page));
+			}
+		}
+		dropFarPages(position);
+	}
+
+	/**
+	 * Called in the main thread when the count or a page cannot be loaded. A page is requested again the next
+	 * time an item around it is bound. The count is not requested again until {@link #refresh()} is called, and
+	 * the loaded items keep being shown meanwhile, so an adapter whose first count failed stays empty until then.
+	 * The default implementation logs the error.
+	 *
+	 * @param countFailed true if the count failed, false if a page failed
+	 * @param e The error of the data source
+	 */
+	protected void onLoadError(final boolean countFailed, @NonNull final Exception e) {
+		Log.w(TAG, countFailed ? "Cannot count the items" : "Cannot load the page", e);
+	}
+
+	private void dropFarPages(final int position) {
+		for (int i = pages.size() - 1; i >= 0; i--) {
+			if (getDistance(pages.keyAt(i), position) > keepDistance) {
+				pages.removeAt(i);
+			}
+		}
+	}
+
+	private int getDistance(final int page, final int position) {
+		final int start = page * pageSize;
+		final int end = start + pageSize - 1;
+		return Math.max(0, Math.max(start - position, position - end));
+	}
+
+	private void onCountLoaded(final int loadedCount) {
+		refreshing = false;
+		pages.clear();
+		countKnown = loadedCount != COUNT_UNKNOWN;
+		count = countKnown ? loadedCount : 0;
+		endReached = false;
+		notifyDataSetChanged();
+		loadAround(Math.max(0, Math.min(lastPosition, count - 1)));
+	}
+
+	private void onPageLoaded(final int page, @NonNull final List<T> items) {
+		if (getDistance(page, lastPosition) > keepDistance) {
+			// The user scrolled away while it was loading
+			return;
+		}
+		pages.put(page, items);
+		final int start = page * pageSize;
+		if (countKnown) {
+			final int changed = Math.min(items.size(), count - start);
+			if (changed > 0) {
+				notifyItemRangeChanged(start, changed);
+			}
+			return;
+		}
+
+		final int previousCount = count;
+		final int end = start + items.size();
+		if (end >= previousCount) {
+			endReached = items.size() < pageSize;
+		}
+		if (start < previousCount) {
+			notifyItemRangeChanged(start, Math.min(end, previousCount) - start);
+		}
+		if (end > previousCount) {
+			count = end;
+			notifyItemRangeInserted(previousCount, end - previousCount);
+		}
+		// The new items may bring the next page within the prefetch distance
+		loadAround(lastPosition);
+	}
+
+	/**
+	 *
+	 * Interface definition for the source of the items of a {@link ClickablePagedAdapter}. Its methods are called
+	 * in a background thread.
+	 *
+	 * @param <T> The type of the items
+	 *
+	 */
+	public interface PageDataSource<T> {
+		/**
+		 *
+		 * Called when the adapter is attached or refreshed
+		 *
+		 * @return The amount of items, or {@link #COUNT_UNKNOWN} if the source cannot know it
+		 * @throws Exception if the items cannot be counted
+		 */
+		int loadCount() throws Exception;
+
+		/**
+		 *
+		 * Called to load a page
+		 *
+		 * @param start The position of the first item of the page
+		 * @param count The amount of items of the page
+		 * @return The items, fewer than the count only at the end of the dataset
+		 * @throws Exception if the page cannot be loaded
+		 */
+		@NonNull
+		List<T> loadPage(final int start, final int count) throws Exception;
+	}
+
+	/**
+	 * Loads the count or a page in background and delivers it in the main thread, unless the adapter was
+	 * refreshed meanwhile
+	 */
+	private final class LoadJob implements Runnable {
+		private final int jobGeneration;
+		private final int page;
+		private boolean loaded;
+		private int loadedCount;
+		private List<T> items;
+		private Exception error;
+
+		/* default */ LoadJob(final int jobGeneration, final int page) {
+			this.jobGeneration = jobGeneration;
+			this.page = page;
+		}
+
+		@Override
+		public void run() {
+			if (!loaded) {
+				load();
+				loaded = true;
+				MAIN_HANDLER.post(this);
+				return;
+			}
+			// Back in the main thread
+			if (jobGeneration != generation) {
+				return;
+			}
+			if (page != COUNT_PAGE) {
+				loadingPages.delete(page);
+			}
+			if (error != null) {
+				refreshing = refreshing && page != COUNT_PAGE;
+				onLoadError(page == COUNT_PAGE, error);
+			} else if (page == COUNT_PAGE) {
+				onCountLoaded(loadedCount);
+			} else {
+				onPageLoaded(page, items);
+			}
+		}
+
+		private void load() {
+			try {
+				if (page == COUNT_PAGE) {
+					loadedCount = dataSource.loadCount();
+				} else {
+					items = dataSource.loadPage(page * pageSize, pageSize);
+				}
+			} catch (final Exception e) {
+				error = e;
+			}
+		}
+	}
+}
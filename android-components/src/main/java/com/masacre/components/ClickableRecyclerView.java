@@ -15,13 +15,21 @@
  */
 package com.masacre.components;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.os.Build;
+import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.widget.RecyclerView;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.Choreographer;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewParent;
+import android.view.WindowManager;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -39,13 +47,35 @@ import java.util.List;
  *     {@link android.view.View.OnLongClickListener#onLongClick(View)} in the view holder</li>
  * </ul>
  *
+ * A single dispatcher is shared by every item view. The view holder installs it on its item view when it is
+ * created, and it resolves the view holder and its adapter position when the click happens, so binding a view
+ * holder does not touch any click state and the position is never stale after the items are moved or removed. A
+ * listener that a view holder sets on its item view afterwards replaces the dispatcher and is kept.
+ *
+ * The view can also measure itself with {@link #setMetricsEnabled(boolean)}: how long the view holders of each view
+ * type take to be created and bound, and which frames went over the frame budget while scrolling. Nothing is
+ * measured while it is disabled.
+ *
+ * A {@link ClickableSelection} set with {@link #setSelection(ClickableSelection)} turns on the selection mode: a long
+ * click selects the item and dragging from it selects a range, and while some item is selected a click toggles the
+ * item instead of reaching the click listeners. The item views of the selected items are activated.
+ *
  * @author Martin Purita - martinpurita@gmail.com
  *
  * @see OnViewHolderClickListener
  */
 public class ClickableRecyclerView extends RecyclerView {
+	private static final long NANOS_PER_SECOND = 1000000000L;
+	private static final float DEFAULT_REFRESH_RATE = 60f;
+
 	private OnViewHolderClickListener onViewHolderClickListener;
 	private OnViewHolderLongClickListener onViewHolderLongClickListener;
+	private final DragSelector dragSelector = new DragSelector();
+	private OnRecyclerMetricsListener onRecyclerMetricsListener;
+	private ClickableSelection selection;
+	private ImageBinder imageBinder;
+	private RecyclerMetrics metrics;
+	private FrameTracker frameTracker;
 
 	/**
 	 *
@@ -99,7 +129,6 @@ public class ClickableRecyclerView extends RecyclerView {
 	public <V extends ClickableViewHolder> void setOnViewHolderClickListener(
 			@Nullable final OnViewHolderClickListener<V> listener) {
 		this.onViewHolderClickListener = listener;
-		setupViewHolderListener(getAdapter());
 	}
 
 	/**
@@ -116,102 +145,437 @@ public class ClickableRecyclerView extends RecyclerView {
 	public <V extends ClickableViewHolder> void setOnViewHolderLongClickListener(
 			@Nullable final OnViewHolderLongClickListener<V> listener) {
 		this.onViewHolderLongClickListener = listener;
-		setupViewHolderListener(getAdapter());
+	}
+
+	/**
+	 * Start or stop measuring the view. The frames are only measured from Jelly Bean. The creation of the view
+	 * holders is only measured when the pool of the view is a {@link ClickableViewPool}, the pool is never changed
+	 * so the view recycles the same way with or without the metrics.
+	 *
+	 * @param enabled true to measure the view
+	 */
+	public void setMetricsEnabled(final boolean enabled) {
+		if (enabled == isMetricsEnabled()) {
+			return;
+		}
+		if (enabled) {
+			metrics = new RecyclerMetrics(getFrameBudgetNanos());
+			if (getScrollState() != SCROLL_STATE_IDLE) {
+				startFrameTracker();
+			}
+		} else {
+			stopFrameTracker();
+			metrics = null;
+		}
+	}
+
+	/**
+	 * @return true if the view is being measured
+	 */
+	public boolean isMetricsEnabled() {
+		return metrics != null;
+	}
+
+	/**
+	 * @return A snapshot of the metrics recorded since they were enabled or reset, or null if they are disabled
+	 */
+	@Nullable
+	public RecyclerMetrics getMetrics() {
+		return metrics == null ? null : metrics.snapshot();
+	}
+
+	/**
+	 * Forget the recorded metrics, if they are enabled
+	 */
+	public void resetMetrics() {
+		if (metrics != null) {
+			metrics = new RecyclerMetrics(metrics.getFrameBudgetNanos());
+		}
+	}
+
+	/**
+	 * Register a callback to be invoked with a snapshot of the metrics each time the view stops scrolling, while
+	 * the metrics are enabled
+	 *
+	 * @param listener The callback that will run
+	 */
+	public void setOnRecyclerMetricsListener(@Nullable final OnRecyclerMetricsListener listener) {
+		this.onRecyclerMetricsListener = listener;
+	}
+
+	/**
+	 * Set the selection of the items, turning on the selection mode. The selection follows the adapter of the
+	 * view, it is cleared when the adapter is replaced.
+	 *
+	 * @param newSelection The selection, or null to turn off the selection mode
+	 */
+	public void setSelection(@Nullable final ClickableSelection newSelection) {
+		if (selection != null) {
+			selection.detach();
+			removeOnItemTouchListener(dragSelector);
+			for (int i = 0; i < getChildCount(); i++) {
+				getChildAt(i).setActivated(false);
+			}
+		}
+		selection = newSelection;
+		if (selection != null) {
+			addOnItemTouchListener(dragSelector);
+			if (getAdapter() != null) {
+				selection.attach(getAdapter());
+			}
+		}
+	}
+
+	/**
+	 * @return The selection of the items, or null if the selection mode is off
+	 */
+	@Nullable
+	public ClickableSelection getSelection() {
+		return selection;
 	}
 
 	@Override
 	public void setAdapter(final Adapter adapter) {
 		super.setAdapter(adapter);
-		setupViewHolderListener(adapter);
+		if (selection != null) {
+			if (adapter == null) {
+				selection.detach();
+			} else {
+				selection.attach(adapter);
+			}
+		}
 	}
 
-	private void setupViewHolderListener(final Adapter adapter) {
-		if (adapter instanceof Adapter) {
-			((ClickableAdapter) adapter).setOnViewHolderClickListener(onViewHolderClickListener);
-			((ClickableAdapter) adapter).setOnViewHolderLongClickListener(onViewHolderLongClickListener);
+	/* default */ void setImageBinder(@Nullable final ImageBinder binder) {
+		this.imageBinder = binder;
+	}
+
+	/* default */ void onViewHolderRecycled(@NonNull final ViewHolder holder) {
+		if (imageBinder != null) {
+			imageBinder.onViewHolderRecycled(holder);
 		}
 	}
 
-	public abstract static class ClickableAdapter<V extends ClickableViewHolder> extends Adapter<V> {
-		private OnViewHolderClickListener<ClickableViewHolder> onViewHolderClickListener;
-		private OnViewHolderLongClickListener<ClickableViewHolder> onViewHolderLongClickListener;
+	/**
+	 * @return The metrics being recorded, or null if they are disabled
+	 */
+	@Nullable
+	/* default */ RecyclerMetrics getRecordingMetrics() {
+		return metrics;
+	}
 
-		@Override
-		public void onBindViewHolder(final V holder, final int position, final List<Object> payloads) {
-			holder.setPosition(position);
-			holder.setOnViewHolderClickListener(onViewHolderClickListener);
-			holder.setOnViewHolderLongClickListener(onViewHolderLongClickListener);
-			super.onBindViewHolder(holder, position, payloads);
+	@Override
+	public void onScrollStateChanged(final int state) {
+		super.onScrollStateChanged(state);
+		if (metrics == null) {
+			return;
 		}
+		if (state == SCROLL_STATE_IDLE) {
+			stopFrameTracker();
+			if (onRecyclerMetricsListener != null) {
+				onRecyclerMetricsListener.onRecyclerMetrics(metrics.snapshot());
+			}
+		} else {
+			startFrameTracker();
+		}
+	}
 
-		/* default */ void setOnViewHolderClickListener(
-				@Nullable final OnViewHolderClickListener<ClickableViewHolder> listener) {
-			this.onViewHolderClickListener = listener;
+	@Override
+	protected void onDetachedFromWindow() {
+		stopFrameTracker();
+		super.onDetachedFromWindow();
+	}
+
+	private void startFrameTracker() {
+		if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+			return;
+		}
+		if (frameTracker == null) {
+			frameTracker = new FrameTracker();
 		}
+		frameTracker.start();
+	}
 
-		/* default */ void setOnViewHolderLongClickListener(
-				@Nullable final OnViewHolderLongClickListener<ClickableViewHolder> listener) {
-			this.onViewHolderLongClickListener = listener;
+	private void stopFrameTracker() {
+		if (frameTracker != null) {
+			frameTracker.stop();
 		}
 	}
 
-	public abstract static class ClickableViewHolder extends ViewHolder implements OnClickListener,
-			OnLongClickListener {
-		private int position;
-		private OnViewHolderClickListener<ClickableViewHolder> onViewHolderClickListener;
-		private OnViewHolderLongClickListener<ClickableViewHolder> onViewHolderLongClickListener;
+	private void startDragSelection(final int position) {
+		selection.startDrag(position);
+		final ViewParent parent = getParent();
+		if (parent != null) {
+			// A pager or a scrolling parent must not take the drag
+			parent.requestDisallowInterceptTouchEvent(true);
+		}
+	}
+
+	private long getFrameBudgetNanos() {
+		final WindowManager windowManager = (WindowManager) getContext().getSystemService(Context.WINDOW_SERVICE);
+		final float refreshRate = windowManager == null ? 0f : windowManager.getDefaultDisplay().getRefreshRate();
+		return (long) (NANOS_PER_SECOND / (refreshRate > 0f ? refreshRate : DEFAULT_REFRESH_RATE));
+	}
+
+	@Override
+	public void onChildAttachedToWindow(final View child) {
+		super.onChildAttachedToWindow(child);
+		if (imageBinder != null) {
+			imageBinder.onViewHolderAttached(getChildViewHolder(child));
+		}
+	}
+
+	@Override
+	public void onChildDetachedFromWindow(final View child) {
+		super.onChildDetachedFromWindow(child);
+		if (imageBinder != null) {
+			imageBinder.onViewHolderDetached(getChildViewHolder(child));
+		}
+	}
+
+	/**
+	 * Get the clicked view holder, if it still is an item of the adapter
+	 *
+	 * @param view The clicked item view
+	 * @return The view holder, or null if the view is no longer an item or its position is not known yet
+	 */
+	@Nullable
+	private ClickableViewHolder getClickedViewHolder(final View view) {
+		if (view.getParent() != this) {
+			return null;
+		}
+		final ViewHolder holder = getChildViewHolder(view);
+		return holder instanceof ClickableViewHolder && holder.getAdapterPosition() != NO_POSITION
+				? (ClickableViewHolder) holder : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void onItemClick(@NonNull final View view) {
+		final ClickableViewHolder holder = getClickedViewHolder(view);
+		if (holder == null) {
+			return;
+		}
+		if (selection != null && !selection.isEmpty()) {
+			selection.toggle(holder.getAdapterPosition());
+		} else if (onViewHolderClickListener == null) {
+			holder.onClick(view);
+		} else {
+			onViewHolderClickListener.onItemClick(holder, holder.getAdapterPosition());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean onItemLongClick(@NonNull final View view) {
+		final ClickableViewHolder holder = getClickedViewHolder(view);
+		if (holder == null) {
+			return false;
+		}
+		if (selection != null) {
+			startDragSelection(holder.getAdapterPosition());
+			return true;
+		}
+		if (onViewHolderLongClickListener == null) {
+			return holder.onLongClick(view);
+		}
+		return onViewHolderLongClickListener.onLongItemClick(holder, holder.getAdapterPosition());
+	}
+
+	/**
+	 * The adapter of a {@link ClickableRecyclerView}.
+	 *
+	 * A change can be bound partially: notify it with a payload, for example
+	 * {@link #notifyItemChanged(int, Object)}, and add a {@link PayloadBinder} for the type of the payload. The
+	 * view holder is then updated by the binder alone instead of being bound again as a whole. The view holder is
+	 * bound as a whole when there is no payload or when one of the payloads has no binder.
+	 *
+	 * While the metrics of the view are enabled the adapter measures the binding of the view holders, so a
+	 * subclass that overrides {@link #onBindViewHolder(ClickableViewHolder, int, List)} must call the super method.
+	 * The same goes for {@link #onViewRecycled(ClickableViewHolder)}, where the images of an {@link ImageBinder} are
+	 * released.
+	 *
+	 * @param <V> The view holder type
+	 */
+	public abstract static class ClickableAdapter<V extends ClickableViewHolder> extends Adapter<V> {
+		private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+		private static final long FNV_PRIME = 0x100000001b3L;
+		private static final int VIEW_TYPE_SHIFT = 48;
+		private static final long ID_MASK = (1L << VIEW_TYPE_SHIFT) - 1;
+
+		private final List<Class<?>> payloadTypes = new ArrayList<>();
+		private final List<PayloadBinder<? super V, ?>> payloadBinders = new ArrayList<>();
+		private ClickableRecyclerView clickableRecyclerView;
 
 		/**
-		 * Initialize a ViewHolder
+		 * Get a stable id for an item identified by a text, such as a server key or an uri. It is a 64 bit hash,
+		 * so two different keys of a list practically never share it.
 		 *
-		 * @param itemView The view that was inflated
+		 * @param key The key of the item
+		 * @return The id to return from {@link #getItemId(int)}
 		 */
-		public ClickableViewHolder(final View itemView) {
-			super(itemView);
-			setupClickListeners();
+		public static long stableIdOf(@NonNull final CharSequence key) {
+			long hash = FNV_OFFSET_BASIS;
+			for (int i = 0; i < key.length(); i++) {
+				hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+			}
+			return hash;
+		}
+
+		/**
+		 * Get a stable id for an item of a list that mixes several kinds of items whose ids may repeat, for example
+		 * posts and ads that come from different tables. The view type is kept in the highest 16 bits.
+		 *
+		 * @param viewType The view type of the item, between 0 and 65535
+		 * @param id The id of the item among the items of its view type, lower than 2 to the 48th
+		 * @return The id to return from {@link #getItemId(int)}
+		 */
+		public static long stableIdOf(final int viewType, final long id) {
+			return ((long) viewType << VIEW_TYPE_SHIFT) | (id & ID_MASK);
+		}
+
+		/**
+		 * Add the binder of a type of payload. The payloads are matched against the types in the order the binders
+		 * were added, so a payload that is an instance of several of them goes to the first one.
+		 *
+		 * @param payloadType The class of the payloads, or a superclass or interface of them
+		 * @param binder The binder that applies the payloads to the view holder
+		 * @param <P> The type of the payloads
+		 */
+		public <P> void addPayloadBinder(@NonNull final Class<P> payloadType,
+				@NonNull final PayloadBinder<? super V, ? super P> binder) {
+			payloadTypes.add(payloadType);
+			payloadBinders.add(binder);
+		}
+
+		@Override
+		public void onAttachedToRecyclerView(final RecyclerView recyclerView) {
+			super.onAttachedToRecyclerView(recyclerView);
+			if (recyclerView instanceof ClickableRecyclerView) {
+				clickableRecyclerView = (ClickableRecyclerView) recyclerView;
+			}
+		}
+
+		@Override
+		public void onDetachedFromRecyclerView(final RecyclerView recyclerView) {
+			super.onDetachedFromRecyclerView(recyclerView);
+			if (recyclerView == clickableRecyclerView) {
+				clickableRecyclerView = null;
+			}
 		}
 
-		private void setupClickListeners() {
-			setupOnClickListener();
-			setupOnLongClickListener();
+		@Override
+		public void onViewRecycled(final V holder) {
+			super.onViewRecycled(holder);
+			if (clickableRecyclerView != null) {
+				clickableRecyclerView.onViewHolderRecycled(holder);
+			}
 		}
 
-		private void setupOnClickListener() {
-			itemView.setOnClickListener(new OnClickListener() {
-				@Override
-				public void onClick(final View v) {
-					if (onViewHolderClickListener == null) {
-						ClickableViewHolder.this.onClick(v);
-					} else {
-						onViewHolderClickListener.onItemClick(ClickableViewHolder.this, position);
+		@Override
+		public void onBindViewHolder(final V holder, final int position, final List<Object> payloads) {
+			final RecyclerMetrics metrics = clickableRecyclerView == null ? null
+					: clickableRecyclerView.getRecordingMetrics();
+			final boolean created = !holder.bound;
+			holder.bound = true;
+			if (metrics == null) {
+				bind(holder, position, payloads);
+				return;
+			}
+
+			final int viewType = holder.getItemViewType();
+			final long startNanos = RecyclerMetrics.now();
+			if (created) {
+				recordCreate(metrics, viewType, startNanos);
+			}
+			bind(holder, position, payloads);
+			metrics.recordBind(viewType, RecyclerMetrics.now() - startNanos);
+		}
+
+		private void bind(@NonNull final V holder, final int position, @NonNull final List<Object> payloads) {
+			if (payloads.isEmpty() || !canBindPayloads(payloads)) {
+				onBindViewHolder(holder, position);
+			} else {
+				for (int i = 0; i < payloads.size(); i++) {
+					final Object payload = payloads.get(i);
+					if (!containsBefore(payloads, payload, i)) {
+						bindPayload(holder, position, payload);
 					}
 				}
-			});
+			}
+			final ClickableSelection selection = clickableRecyclerView == null ? null
+					: clickableRecyclerView.getSelection();
+			if (selection != null) {
+				holder.itemView.setActivated(selection.isSelected(position));
+			}
 		}
 
-		private void setupOnLongClickListener() {
-			itemView.setOnLongClickListener(new OnLongClickListener() {
-				@Override
-				public boolean onLongClick(final View v) {
-					if (onViewHolderLongClickListener == null) {
-						return ClickableViewHolder.this.onLongClick(v);
-					} else {
-						return onViewHolderLongClickListener.onLongItemClick(ClickableViewHolder.this, position);
-					}
+		private boolean canBindPayloads(@NonNull final List<Object> payloads) {
+			for (int i = 0; i < payloads.size(); i++) {
+				final Object payload = payloads.get(i);
+				// The selection only needs the activated state, which is set after every bind
+				if (payload != ClickableSelection.PAYLOAD && indexOfBinder(payload) < 0) {
+					return false;
 				}
-			});
+			}
+			return true;
 		}
 
-		/* default */ void setPosition(final int position) {
-			this.position = position;
+		/**
+		 * The same payload is given once per notification, it is applied only once
+		 */
+		private static boolean containsBefore(@NonNull final List<Object> payloads, final Object payload,
+				final int index) {
+			for (int i = 0; i < index; i++) {
+				if (payloads.get(i) == payload) {
+					return true;
+				}
+			}
+			return false;
 		}
 
-		/* default */ void setOnViewHolderClickListener(@Nullable  final OnViewHolderClickListener<ClickableViewHolder> listener) {
-			this.onViewHolderClickListener = listener;
+		private int indexOfBinder(@Nullable final Object payload) {
+			for (int i = 0; i < payloadTypes.size(); i++) {
+				if (payloadTypes.get(i).isInstance(payload)) {
+					return i;
+				}
+			}
+			return -1;
 		}
 
-		/* default */ void setOnViewHolderLongClickListener(@Nullable  final OnViewHolderLongClickListener<ClickableViewHolder> listener) {
-			this.onViewHolderLongClickListener = listener;
+		@SuppressWarnings("unchecked")
+		private void bindPayload(@NonNull final V holder, final int position, @NonNull final Object payload) {
+			final int index = indexOfBinder(payload);
+			if (index >= 0) {
+				((PayloadBinder<? super V, Object>) payloadBinders.get(index)).onBindPayload(holder, position, payload);
+			}
+		}
+
+		/**
+		 * A view holder is bound right after it is created, so its creation lasted since it was missing in the pool
+		 */
+		private void recordCreate(@NonNull final RecyclerMetrics metrics, final int viewType, final long nowNanos) {
+			final RecycledViewPool pool = clickableRecyclerView.getRecycledViewPool();
+			final long missNanos = pool instanceof ClickableViewPool ? ((ClickableViewPool) pool).consumeMiss(viewType)
+					: 0L;
+			if (missNanos != 0L) {
+				metrics.recordCreate(viewType, nowNanos - missNanos);
+			}
+		}
+	}
+
+	public abstract static class ClickableViewHolder extends ViewHolder implements OnClickListener,
+			OnLongClickListener {
+		/* default */ boolean bound;
+
+		/**
+		 * Initialize a ViewHolder
+		 *
+		 * @param itemView The view that was inflated
+		 */
+		public ClickableViewHolder(final View itemView) {
+			super(itemView);
+			// Installed before the subclass runs, so a listener it sets on the item view is not overwritten
+			itemView.setOnClickListener(ClickDispatcher.INSTANCE);
+			itemView.setOnLongClickListener(ClickDispatcher.INSTANCE);
 		}
 
 		@Override
@@ -231,6 +595,103 @@ public class ClickableRecyclerView extends RecyclerView {
 		}
 	}
 
+	/**
+	 * The click and long click listener of every item view. In a {@link ClickableRecyclerView} the click reaches
+	 * its listeners and its selection, in any other recycler view it reaches the view holder.
+	 */
+	private static final class ClickDispatcher implements OnClickListener, OnLongClickListener {
+		/* default */ static final ClickDispatcher INSTANCE = new ClickDispatcher();
+
+		@Override
+		public void onClick(final View v) {
+			final ViewParent parent = v.getParent();
+			if (parent instanceof ClickableRecyclerView) {
+				((ClickableRecyclerView) parent).onItemClick(v);
+			} else if (parent instanceof RecyclerView) {
+				final ViewHolder holder = ((RecyclerView) parent).getChildViewHolder(v);
+				if (holder instanceof ClickableViewHolder) {
+					((ClickableViewHolder) holder).onClick(v);
+				}
+			}
+		}
+
+		@Override
+		public boolean onLongClick(final View v) {
+			final ViewParent parent = v.getParent();
+			if (parent instanceof ClickableRecyclerView) {
+				return ((ClickableRecyclerView) parent).onItemLongClick(v);
+			} else if (parent instanceof RecyclerView) {
+				final ViewHolder holder = ((RecyclerView) parent).getChildViewHolder(v);
+				return holder instanceof ClickableViewHolder && ((ClickableViewHolder) holder).onLongClick(v);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Selects the items under the finger after a long click, until the finger is lifted
+	 */
+	private final class DragSelector extends SimpleOnItemTouchListener {
+		@Override
+		public boolean onInterceptTouchEvent(final RecyclerView recyclerView, final MotionEvent e) {
+			if (selection == null || !selection.isDragging()) {
+				return false;
+			}
+			onTouchEvent(recyclerView, e);
+			return true;
+		}
+
+		@Override
+		public void onTouchEvent(final RecyclerView recyclerView, final MotionEvent e) {
+			final int action = e.getActionMasked();
+			if (selection == null) {
+				return;
+			}
+			if (action == MotionEvent.ACTION_MOVE) {
+				final View child = findChildViewUnder(e.getX(), e.getY());
+				final int position = child == null ? NO_POSITION : getChildAdapterPosition(child);
+				if (position != NO_POSITION) {
+					selection.dragTo(position);
+				}
+			} else if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+				selection.endDrag();
+			}
+		}
+	}
+
+	/**
+	 * Measures the time between the frames while the view scrolls
+	 */
+	@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+	private final class FrameTracker implements Choreographer.FrameCallback {
+		private long lastFrameNanos;
+		private boolean running;
+
+		/* default */ void start() {
+			if (!running) {
+				running = true;
+				lastFrameNanos = 0L;
+				Choreographer.getInstance().postFrameCallback(this);
+			}
+		}
+
+		/* default */ void stop() {
+			if (running) {
+				running = false;
+				Choreographer.getInstance().removeFrameCallback(this);
+			}
+		}
+
+		@Override
+		public void doFrame(final long frameTimeNanos) {
+			if (lastFrameNanos != 0L && metrics != null) {
+				metrics.recordFrame(frameTimeNanos - lastFrameNanos);
+			}
+			lastFrameNanos = frameTimeNanos;
+			Choreographer.getInstance().postFrameCallback(this);
+		}
+	}
+
 	/**
 	 *
 	 * Interface definition for a callback to be invoked when a view holder is clicked and
@@ -268,4 +729,40 @@ public class ClickableRecyclerView extends RecyclerView {
 		 */
 		boolean onLongItemClick(final V holder, final int position);
 	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked when the view stops scrolling while its metrics are enabled
+	 *
+	 */
+	public interface OnRecyclerMetricsListener {
+		/**
+		 *
+		 * Called when the view stops scrolling
+		 *
+		 * @param metrics A snapshot of the metrics recorded since they were enabled or reset
+		 */
+		void onRecyclerMetrics(@NonNull final RecyclerMetrics metrics);
+	}
+
+	/**
+	 *
+	 * Interface definition for the partial binding of a change notified with a payload
+	 *
+	 * @param <V> The {@link ClickableViewHolder} that you add to the adapter
+	 * @param <P> The type of the payload
+	 *
+	 */
+	public interface PayloadBinder<V extends ClickableViewHolder, P> {
+		/**
+		 *
+		 * Called instead of {@link Adapter#onBindViewHolder(ViewHolder, int)} to apply a change to a view holder
+		 * that shows the item
+		 *
+		 * @param holder The view holder of the item
+		 * @param position The item position in the the adapter
+		 * @param payload The payload given when the change was notified
+		 */
+		void onBindPayload(final V holder, final int position, final P payload);
+	}
 }
@@ -0,0 +1,401 @@
+package com.masacre.components;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A <code>ClickableSelection</code> holds the selected positions of a {@link ClickableRecyclerView} as a bitset,
+ * one bit per item, so a list of a hundred thousand items takes twelve kilobytes and no position is boxed. Selecting
+ * all the items or inverting the selection only flips a flag that inverts the meaning of the bits.
+ * </p>
+ *
+ * The selection follows the insertions, removals and moves notified by the adapter, the bits are shifted a word at a
+ * time. When the whole data set changes the positions are meaningless, so the selection is cleared.
+ *
+ * A change of the selection is notified to the adapter with {@link #PAYLOAD}, the {@link ClickableRecyclerView}
+ * then only sets the activated state of the item view, unless a {@link ClickableRecyclerView.PayloadBinder} is
+ * added for {@link Payload}. It must be used from the main thread.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ClickableRecyclerView#setSelection(ClickableSelection)
+ */
+public class ClickableSelection {
+	/**
+	 * The payload of the changes of the selection
+	 */
+	public static final Payload PAYLOAD = new Payload();
+
+	private static final int ADDRESS_BITS = 6;
+	private static final int WORD_SIZE = 1 << ADDRESS_BITS;
+	private static final int WORD_MASK = WORD_SIZE - 1;
+	private static final long[] EMPTY = new long[0];
+
+	private final DataObserver dataObserver = new DataObserver();
+	private long[] words = EMPTY;
+	private long[] dragWords;
+	private boolean inverted;
+	private int size;
+	private int dragAnchor = RecyclerView.NO_POSITION;
+	private int dragEnd;
+	private RecyclerView.Adapter<?> adapter;
+	private OnSelectionChangedListener onSelectionChangedListener;
+
+	/**
+	 * Register a callback to be invoked when the selected positions change
+	 *
+	 * @param listener The callback that will run
+	 */
+	public void setOnSelectionChangedListener(@Nullable final OnSelectionChangedListener listener) {
+		this.onSelectionChangedListener = listener;
+	}
+
+	/**
+	 * @param position The item position in the adapter
+	 * @return true if the item is selected
+	 */
+	public boolean isSelected(final int position) {
+		return position >= 0 && position < size && getBit(position) != inverted;
+	}
+
+	/**
+	 * Select or unselect an item
+	 *
+	 * @param position The item position in the adapter
+	 * @param selected true to select the item
+	 */
+	public void setSelected(final int position, final boolean selected) {
+		checkPosition(position);
+		if (isSelected(position) != selected) {
+			toggle(position);
+		}
+	}
+
+	/**
+	 * Select the item if it is not selected, unselect it otherwise
+	 *
+	 * @param position The item position in the adapter
+	 */
+	public void toggle(final int position) {
+		checkPosition(position);
+		words[position >>> ADDRESS_BITS] ^= 1L << position;
+		notifyChanged(position, 1);
+	}
+
+	/**
+	 * Select or unselect a range of items
+	 *
+	 * @param positionStart The position of the first item
+	 * @param itemCount The amount of items
+	 * @param selected true to select the items
+	 */
+	public void setRangeSelected(final int positionStart, final int itemCount, final boolean selected) {
+		if (positionStart < 0 || itemCount < 0 || positionStart + itemCount > size) {
+			throw new IndexOutOfBoundsException("Range " + positionStart + "+" + itemCount + ", size " + size);
+		}
+		fillBits(words, positionStart, itemCount, selected != inverted);
+		notifyChanged(positionStart, itemCount);
+	}
+
+	/**
+	 * Select every item, including the ones that are not bound. It does not visit the items.
+	 */
+	public void selectAll() {
+		endDrag();
+		Arrays.fill(words, 0L);
+		inverted = true;
+		notifyChanged(0, size);
+	}
+
+	/**
+	 * Select the items that are not selected and unselect the others. It does not visit the items.
+	 */
+	public void invert() {
+		endDrag();
+		inverted = !inverted;
+		notifyChanged(0, size);
+	}
+
+	/**
+	 * Unselect every item
+	 */
+	public void clear() {
+		endDrag();
+		Arrays.fill(words, 0L);
+		inverted = false;
+		notifyChanged(0, size);
+	}
+
+	/**
+	 * @return The amount of selected items
+	 */
+	public int getSelectedCount() {
+		int count = 0;
+		for (final long word : words) {
+			count += Long.bitCount(word);
+		}
+		// The bits past the last item are always clear
+		return inverted ? size - count : count;
+	}
+
+	/**
+	 * @return true if no item is selected
+	 */
+	public boolean isEmpty() {
+		return getSelectedCount() == 0;
+	}
+
+	/**
+	 * @return The positions of the selected items, in ascending order
+	 */
+	@NonNull
+	public int[] getSelectedPositions() {
+		final int[] positions = new int[getSelectedCount()];
+		int index = 0;
+		for (int position = 0; index < positions.length; position++) {
+			if (getBit(position) != inverted) {
+				positions[index++] = position;
+			}
+		}
+		return positions;
+	}
+
+	/* default */ void attach(@NonNull final RecyclerView.Adapter<?> newAdapter) {
+		detach();
+		adapter = newAdapter;
+		adapter.registerAdapterDataObserver(dataObserver);
+		reset(adapter.getItemCount());
+	}
+
+	/* default */ void detach() {
+		if (adapter != null) {
+			adapter.unregisterAdapterDataObserver(dataObserver);
+			adapter = null;
+		}
+		endDrag();
+	}
+
+	/**
+	 * Start selecting a range by dragging, from an item that gets selected
+	 *
+	 * @param position The item position in the adapter where the drag started
+	 */
+	/* default */ void startDrag(final int position) {
+		checkPosition(position);
+		dragWords = words.clone();
+		dragAnchor = position;
+		dragEnd = position;
+		setSelected(position, true);
+	}
+
+	/* default */ boolean isDragging() {
+		return dragAnchor != RecyclerView.NO_POSITION;
+	}
+
+	/**
+	 * Select the items between the start of the drag and a position. The items that leave the range get back the
+	 * state they had when the drag started.
+	 *
+	 * @param position The item position in the adapter under the finger
+	 */
+	/* default */ void dragTo(final int position) {
+		if (!isDragging() || position == dragEnd || position < 0 || position >= size) {
+			return;
+		}
+		final int oldStart = Math.min(dragAnchor, dragEnd);
+		final int oldCount = Math.abs(dragEnd - dragAnchor) + 1;
+		copyBits(dragWords, oldStart, words, oldStart, oldCount);
+		final int start = Math.min(dragAnchor, position);
+		final int count = Math.abs(position - dragAnchor) + 1;
+		fillBits(words, start, count, !inverted);
+		dragEnd = position;
+		final int changedStart = Math.min(oldStart, start);
+		notifyChanged(changedStart, Math.max(oldStart + oldCount, start + count) - changedStart);
+	}
+
+	/* default */ void endDrag() {
+		dragAnchor = RecyclerView.NO_POSITION;
+		dragWords = null;
+	}
+
+	private void checkPosition(final int position) {
+		if (position < 0 || position >= size) {
+			throw new IndexOutOfBoundsException("Position " + position + ", size " + size);
+		}
+	}
+
+	private boolean getBit(final int position) {
+		return (words[position >>> ADDRESS_BITS] & 1L << position) != 0;
+	}
+
+	private void reset(final int itemCount) {
+		size = itemCount;
+		words = new long[getWordCount(itemCount)];
+		inverted = false;
+		endDrag();
+	}
+
+	private void notifyChanged(final int positionStart, final int itemCount) {
+		if (adapter != null && itemCount > 0) {
+			adapter.notifyItemRangeChanged(positionStart, itemCount, PAYLOAD);
+		}
+		notifyListener();
+	}
+
+	private void notifyListener() {
+		if (onSelectionChangedListener != null) {
+			onSelectionChangedListener.onSelectionChanged(this);
+		}
+	}
+
+	private void insert(final int positionStart, final int itemCount) {
+		if (getWordCount(size + itemCount) > words.length) {
+			words = Arrays.copyOf(words, Math.max(getWordCount(size + itemCount), words.length * 2));
+		}
+		copyBits(words, positionStart, words, positionStart + itemCount, size - positionStart);
+		// The new items are not selected, even after select all
+		fillBits(words, positionStart, itemCount, inverted);
+		size += itemCount;
+	}
+
+	private void remove(final int positionStart, final int itemCount) {
+		copyBits(words, positionStart + itemCount, words, positionStart, size - positionStart - itemCount);
+		fillBits(words, size - itemCount, itemCount, false);
+		size -= itemCount;
+	}
+
+	private static int getWordCount(final int bits) {
+		return (bits + WORD_MASK) >>> ADDRESS_BITS;
+	}
+
+	/**
+	 * Copy a range of bits, the ranges may overlap
+	 */
+	private static void copyBits(@NonNull final long[] from, final int fromPosition, @NonNull final long[] to,
+			final int toPosition, final int count) {
+		if (toPosition > fromPosition) {
+			// Backwards, so a chunk is never overwritten before it is read
+			for (int remaining = count; remaining > 0;) {
+				final int chunk = Math.min(WORD_SIZE, remaining);
+				remaining -= chunk;
+				writeBits(to, toPosition + remaining, chunk, readBits(from, fromPosition + remaining, chunk));
+			}
+		} else {
+			for (int done = 0; done < count;) {
+				final int chunk = Math.min(WORD_SIZE, count - done);
+				writeBits(to, toPosition + done, chunk, readBits(from, fromPosition + done, chunk));
+				done += chunk;
+			}
+		}
+	}
+
+	private static void fillBits(@NonNull final long[] words, final int position, final int count,
+			final boolean value) {
+		for (int done = 0; done < count;) {
+			final int chunk = Math.min(WORD_SIZE, count - done);
+			writeBits(words, position + done, chunk, value ? -1L : 0L);
+			done += chunk;
+		}
+	}
+
+	/**
+	 * Read up to a word of bits that may span two words, in the lowest bits of the result
+	 */
+	private static long readBits(@NonNull final long[] words, final int position, final int count) {
+		final int index = position >>> ADDRESS_BITS;
+		final int shift = position & WORD_MASK;
+		long value = words[index] >>> shift;
+		if (shift + count > WORD_SIZE) {
+			value |= words[index + 1] << (WORD_SIZE - shift);
+		}
+		return value & getMask(count);
+	}
+
+	/**
+	 * Write up to a word of bits that may span two words, taken from the lowest bits of the value
+	 */
+	private static void writeBits(@NonNull final long[] words, final int position, final int count,
+			final long value) {
+		final int index = position >>> ADDRESS_BITS;
+		final int shift = position & WORD_MASK;
+		final long mask = getMask(count);
+		words[index] = words[index] & ~(mask << shift) | (value & mask) << shift;
+		if (shift + count > WORD_SIZE) {
+			final long highMask = getMask(shift + count - WORD_SIZE);
+			words[index + 1] = words[index + 1] & ~highMask | value >>> (WORD_SIZE - shift) & highMask;
+		}
+	}
+
+	private static long getMask(final int count) {
+		return count == WORD_SIZE ? -1L : (1L << count) - 1;
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked when the selected positions change
+	 *
+	 */
+	public interface OnSelectionChangedListener {
+		/**
+		 *
+		 * Called when an item is selected or unselected, or when a selected item is removed
+		 *
+		 * @param selection The selection that changed
+		 */
+		void onSelectionChanged(@NonNull final ClickableSelection selection);
+	}
+
+	/**
+	 * The type of {@link #PAYLOAD}, to add a {@link ClickableRecyclerView.PayloadBinder} for the changes of the
+	 * selection
+	 */
+	public static final class Payload {
+		/* default */ Payload() {
+			// Only the constant exists
+		}
+	}
+
+	/**
+	 * Shifts the bits with the items
+	 */
+	private final class DataObserver extends RecyclerView.AdapterDataObserver {
+		@Override
+		public void onChanged() {
+			final boolean hadSelection = !isEmpty();
+			reset(adapter.getItemCount());
+			if (hadSelection) {
+				notifyListener();
+			}
+		}
+
+		@Override
+		public void onItemRangeInserted(final int positionStart, final int itemCount) {
+			endDrag();
+			insert(positionStart, itemCount);
+		}
+
+		@Override
+		public void onItemRangeRemoved(final int positionStart, final int itemCount) {
+			endDrag();
+			final int selectedCount = getSelectedCount();
+			remove(positionStart, itemCount);
+			if (getSelectedCount() != selectedCount) {
+				notifyListener();
+			}
+		}
+
+		@Override
+		public void onItemRangeMoved(final int fromPosition, final int toPosition, final int itemCount) {
+			// The recycler view only moves a single item
+			endDrag();
+			final boolean bit = getBit(fromPosition);
+			remove(fromPosition, 1);
+			insert(toPosition, 1);
+			fillBits(words, toPosition, 1, bit);
+		}
+	}
+}
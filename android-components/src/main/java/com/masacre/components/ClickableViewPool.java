@@ -0,0 +1,154 @@
+package com.masacre.components;
+
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+import android.util.SparseIntArray;
+
+import java.util.ArrayDeque;
+
+/**
+ * <p>
+ * A <code>ClickableViewPool</code> is a {@link RecyclerView.RecycledViewPool} meant to be shared by several
+ * {@link ClickableRecyclerView}s that show the same view types, for example the pages of a view pager, so a view
+ * holder inflated by one list is reused by the others. Each view type can have its own capacity.
+ * </p>
+ *
+ * The pool can also be filled before the lists are shown: {@link #warmUp(RecyclerView, int, int)} creates the view
+ * holders one at a time while the main thread is idle, so the first scroll does not inflate them.
+ *
+ * The pool remembers when the last view holder was missing, which is when the recycler view starts to create one,
+ * so the {@link RecyclerMetrics} can measure the creation of the view holders.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see RecyclerView#setRecycledViewPool(RecyclerView.RecycledViewPool)
+ */
+public class ClickableViewPool extends RecyclerView.RecycledViewPool {
+	/**
+	 * The capacity of a view type whose capacity was not set, the same as the one of the recycler view
+	 */
+	public static final int DEFAULT_CAPACITY = 5;
+
+	private final SparseIntArray capacities = new SparseIntArray();
+	private final ArrayDeque<WarmUp> warmUps = new ArrayDeque<>();
+	private int missViewType;
+	private long missNanos;
+	private final MessageQueue.IdleHandler warmUpHandler = new MessageQueue.IdleHandler() {
+		@Override
+		public boolean queueIdle() {
+			return warmUpNext();
+		}
+	};
+
+	/**
+	 * Set the maximum amount of view holders of a view type that the pool keeps
+	 *
+	 * @param viewType The view type
+	 * @param capacity The maximum amount of view holders
+	 */
+	public void setCapacity(final int viewType, final int capacity) {
+		capacities.put(viewType, capacity);
+		setMaxRecycledViews(viewType, capacity);
+	}
+
+	/**
+	 * @param viewType The view type
+	 * @return The maximum amount of view holders of the view type that the pool keeps
+	 */
+	public int getCapacity(final int viewType) {
+		return capacities.get(viewType, DEFAULT_CAPACITY);
+	}
+
+	@Override
+	public RecyclerView.ViewHolder getRecycledView(final int viewType) {
+		final RecyclerView.ViewHolder holder = super.getRecycledView(viewType);
+		// A miss is followed by the creation of a view holder, reading the clock costs nothing next to it
+		missViewType = viewType;
+		missNanos = holder == null ? RecyclerMetrics.now() : 0L;
+		return holder;
+	}
+
+	/**
+	 * Get the time when the last view holder was missing and forget it, so it is used by a single view holder
+	 *
+	 * @param viewType The view type of the created view holder
+	 * @return The value of {@link RecyclerMetrics#now()} when the view holder was missing, or 0 if the last view
+	 *         holder of the view type was not missing
+	 */
+	/* default */ long consumeMiss(final int viewType) {
+		final long nanos = viewType == missViewType ? missNanos : 0L;
+		missNanos = 0L;
+		return nanos;
+	}
+
+	/**
+	 * Create view holders of a view type while the main thread is idle and put them in the pool. The capacity of
+	 * the view type is raised to the count if it is lower. It must be called from the main thread.
+	 *
+	 * @param recyclerView The recycler view whose adapter creates the view holders, used as their parent
+	 * @param viewType The view type
+	 * @param count The amount of view holders to create
+	 */
+	public void warmUp(@NonNull final RecyclerView recyclerView, final int viewType, final int count) {
+		if (recyclerView.getAdapter() == null) {
+			throw new IllegalStateException("The recycler view must have an adapter to create the view holders");
+		}
+		if (count <= 0) {
+			return;
+		}
+		if (getCapacity(viewType) < count) {
+			setCapacity(viewType, count);
+		}
+		if (warmUps.isEmpty()) {
+			Looper.myQueue().addIdleHandler(warmUpHandler);
+		}
+		warmUps.add(new WarmUp(recyclerView, viewType, count));
+	}
+
+	/**
+	 * Stop creating the view holders that were not created yet
+	 */
+	public void cancelWarmUp() {
+		if (!warmUps.isEmpty()) {
+			warmUps.clear();
+			Looper.myQueue().removeIdleHandler(warmUpHandler);
+		}
+	}
+
+	/**
+	 * Create a single view holder, so each idle moment of the main thread stays short
+	 *
+	 * @return true if there are more view holders to create
+	 */
+	private boolean warmUpNext() {
+		final WarmUp warmUp = warmUps.peek();
+		if (warmUp == null) {
+			return false;
+		}
+		final RecyclerView.Adapter<?> adapter = warmUp.recyclerView.getAdapter();
+		if (adapter == null) {
+			warmUps.poll();
+		} else {
+			putRecycledView(adapter.createViewHolder(warmUp.recyclerView, warmUp.viewType));
+			warmUp.remaining--;
+			if (warmUp.remaining == 0) {
+				warmUps.poll();
+			}
+		}
+		return !warmUps.isEmpty();
+	}
+
+	private static final class WarmUp {
+		private final RecyclerView recyclerView;
+		private final int viewType;
+		private int remaining;
+
+		/* default */ WarmUp(@NonNull final RecyclerView recyclerView, final int viewType, final int count) {
+			this.recyclerView = recyclerView;
+			this.viewType = viewType;
+			this.remaining = count;
+		}
+	}
+}
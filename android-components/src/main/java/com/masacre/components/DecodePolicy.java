@@ -0,0 +1,223 @@
+package com.masacre.components;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.DisplayMetrics;
+
+import com.masacre.image.ImageHeader;
+import com.masacre.model.ImageRequest;
+
+/**
+ * <p>
+ * A <code>DecodePolicy</code> adapts the decodes to the device. The memory class and the low ram flag of the
+ * device place it in a {@link MemoryTier}, which decides the resolution of the requests created for a view,
+ * the amount of parallel decodes and the memory they can hold.
+ * </p>
+ *
+ * Before each decode the policy also looks at the image and at the current heap headroom: opaque JPEG images
+ * are decoded in {@link Bitmap.Config#RGB_565} on low memory devices or when the decode would take a large part
+ * of the free heap, and the target size is lowered when that is still not enough.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setDecodePolicy(DecodePolicy)
+ */
+public class DecodePolicy {
+	private static final int BYTES_PER_MEGABYTE = 1024 * 1024;
+	private static final int LOW_MEMORY_CLASS = 64;
+	private static final int HIGH_MEMORY_CLASS = 192;
+	private static final float LOW_TIER_SIDE_FACTOR = (float) Math.sqrt(0.5);
+	private static final float HIGH_TIER_SIDE_FACTOR = 1.5f;
+	private static final int HEADROOM_FRACTION = 4;
+	private static final int LOW_TIER_BUDGET_FRACTION = 8;
+	private static final int NORMAL_TIER_BUDGET_FRACTION = 4;
+	private static final int HIGH_TIER_BUDGET_FRACTION = 3;
+	private static final int HIGH_TIER_MAX_THREADS = 4;
+
+	private final MemoryTier memoryTier;
+	private final int screenWidth;
+	private final int screenHeight;
+
+	/**
+	 * Create the policy of the device where the app is running
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 */
+	public DecodePolicy(@NonNull final Context context) {
+		final ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+		final boolean lowRamDevice = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+				&& activityManager.isLowRamDevice();
+		final DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+		this.memoryTier = getMemoryTier(activityManager.getMemoryClass(), lowRamDevice);
+		this.screenWidth = displayMetrics.widthPixels;
+		this.screenHeight = displayMetrics.heightPixels;
+	}
+
+	/**
+	 * Create a policy with the given tier and screen size
+	 *
+	 * @param memoryTier The memory tier of the device
+	 * @param screenWidth The width of the screen in pixels
+	 * @param screenHeight The height of the screen in pixels
+	 */
+	public DecodePolicy(@NonNull final MemoryTier memoryTier, final int screenWidth, final int screenHeight) {
+		this.memoryTier = memoryTier;
+		this.screenWidth = screenWidth;
+		this.screenHeight = screenHeight;
+	}
+
+	/**
+	 * Get the memory tier of a device
+	 *
+	 * @param memoryClass The memory class of the device, in megabytes
+	 * @param lowRamDevice Whether the device is considered a low ram device
+	 * @return The memory tier
+	 */
+	@NonNull
+	public static MemoryTier getMemoryTier(final int memoryClass, final boolean lowRamDevice) {
+		if (lowRamDevice || memoryClass <= LOW_MEMORY_CLASS) {
+			return MemoryTier.LOW;
+		}
+		return memoryClass >= HIGH_MEMORY_CLASS ? MemoryTier.HIGH : MemoryTier.NORMAL;
+	}
+
+	@NonNull
+	public MemoryTier getMemoryTier() {
+		return memoryTier;
+	}
+
+	/**
+	 * Create a request for an image shown in a view of the given size. The size is limited to the screen and
+	 * raised on high memory devices, so a zoom stays sharp. On low memory devices it is lowered when the image is
+	 * decoded, like the size of any other request.
+	 *
+	 * @param viewWidth The width of the view in pixels
+	 * @param viewHeight The height of the view in pixels
+	 * @param scaleMode The way the decoded image reaches the size of the view
+	 * @return The image request
+	 */
+	@NonNull
+	public ImageRequest createRequest(final int viewWidth, final int viewHeight,
+			@NonNull final ImageRequest.ScaleMode scaleMode) {
+		final int maxSide = Math.max(screenWidth, screenHeight);
+		final float factor = memoryTier == MemoryTier.HIGH ? HIGH_TIER_SIDE_FACTOR : 1f;
+		return new ImageRequest.Builder()
+				.setTargetSize(scaleSide(Math.min(viewWidth, maxSide), factor, maxSide),
+						scaleSide(Math.min(viewHeight, maxSide), factor, maxSide))
+				.setScaleMode(scaleMode)
+				.build();
+	}
+
+	/**
+	 * @return The amount of images decoded at the same time by the default image executor
+	 */
+	public int getDecodeThreads() {
+		if (memoryTier == MemoryTier.LOW) {
+			return 1;
+		} else if (memoryTier == MemoryTier.HIGH) {
+			return Math.max(1, Math.min(HIGH_TIER_MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		}
+		// The executor derives it from the available processors
+		return 0;
+	}
+
+	/**
+	 * @return The maximum amount of bytes that the images being decoded at the same time can hold
+	 */
+	public long getDecodeBudgetBytes() {
+		final int fraction;
+		if (memoryTier == MemoryTier.LOW) {
+			fraction = LOW_TIER_BUDGET_FRACTION;
+		} else if (memoryTier == MemoryTier.HIGH) {
+			fraction = HIGH_TIER_BUDGET_FRACTION;
+		} else {
+			fraction = NORMAL_TIER_BUDGET_FRACTION;
+		}
+		return Runtime.getRuntime().maxMemory() / fraction;
+	}
+
+	/**
+	 * Adapt a request to the image that is going to be decoded and to the current heap headroom
+	 *
+	 * @param request The request of the caller
+	 * @param header The header of the image
+	 * @param estimatedBytes The peak bytes of the decode with the given request
+	 * @return The request to decode the image with
+	 */
+	@NonNull
+	/* default */ ImageRequest adjust(@NonNull final ImageRequest request, @NonNull final ImageHeader header,
+			final long estimatedBytes) {
+		final long limit = getHeapHeadroom() / HEADROOM_FRACTION;
+		long bytes = estimatedBytes;
+		ImageRequest.Builder builder = null;
+
+		final boolean rgb565 = header.isOpaque() && request.getConfig() == Bitmap.Config.ARGB_8888
+				&& (memoryTier == MemoryTier.LOW || bytes > limit);
+		if (rgb565) {
+			// An opaque image loses no transparency, only color depth
+			builder = request.buildUpon().setConfig(Bitmap.Config.RGB_565);
+			bytes /= 2;
+		}
+
+		// Without a target size the sides cannot be scaled, so the bytes do not go down
+		final boolean hasTarget = request.getTargetWidth() != ImageRequest.SIZE_UNSPECIFIED
+				|| request.getTargetHeight() != ImageRequest.SIZE_UNSPECIFIED;
+		float factor = 1f;
+		if (memoryTier == MemoryTier.LOW && !rgb565 && hasTarget) {
+			factor = LOW_TIER_SIDE_FACTOR;
+			bytes /= 2;
+		}
+		if (bytes > limit && limit > 0) {
+			factor *= (float) Math.sqrt((double) limit / bytes);
+		}
+		if (factor < 1f && hasTarget) {
+			builder = builder == null ? request.buildUpon() : builder;
+			builder.setTargetSize(scaleSide(request.getTargetWidth(), factor, Integer.MAX_VALUE),
+					scaleSide(request.getTargetHeight(), factor, Integer.MAX_VALUE));
+		}
+		return builder == null ? request : builder.build();
+	}
+
+	/**
+	 * @return The bytes that the heap can still grow before it reaches its limit
+	 */
+	protected long getHeapHeadroom() {
+		final Runtime runtime = Runtime.getRuntime();
+		return runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+	}
+
+	@Override
+	public String toString() {
+		return "DecodePolicy{" + memoryTier + ", screen=" + screenWidth + "x" + screenHeight + ", heapLimit="
+				+ Runtime.getRuntime().maxMemory() / BYTES_PER_MEGABYTE + "MB}";
+	}
+
+	private static int scaleSide(final int side, final float factor, final int maxSide) {
+		if (side == ImageRequest.SIZE_UNSPECIFIED) {
+			return side;
+		}
+		return Math.max(1, Math.min(maxSide, Math.round(side * factor)));
+	}
+
+	/**
+	 * The amount of memory that a device gives to each app
+	 */
+	public enum MemoryTier {
+		/**
+		 * Low ram devices or a memory class up to 64MB: images get half the bytes
+		 */
+		LOW,
+		/**
+		 * The requests are used as they are
+		 */
+		NORMAL,
+		/**
+		 * A memory class of 192MB or more: images get a higher resolution and more parallel decodes
+		 */
+		HIGH
+	}
+}
@@ -0,0 +1,508 @@
+package com.masacre.components;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.masacre.model.BitmapImage;
+import com.masacre.model.ImageRequest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * A <code>DiskImageCache</code> keeps the already sampled and rotated images in disk, so an image
+ * picked again is read from a small file instead of decoding the original one. When the rotation of
+ * an image is deferred it is stored along with the entry.
+ * </p>
+ *
+ * The entries are listed in a journal, in least recently used order. Each image is written to a temp
+ * file that is renamed when it is complete, so a crash never leaves a partial entry. When the cache
+ * grows over its budget the least recently used entries are removed in background. The writes and the trims of
+ * every cache run in a single background thread that stops when it is idle.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setDiskCache(DiskImageCache)
+ */
+public class DiskImageCache {
+	private static final String TAG = "DiskImageCache";
+	private static final String DIRECTORY_NAME = "image_cache";
+	private static final String JOURNAL_FILE = "journal";
+	private static final String JOURNAL_FILE_TEMP = "journal.tmp";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final String MAGIC = "com.masacre.DiskImageCache";
+	private static final String VERSION = "2";
+	private static final String CLEAN = "CLEAN";
+	private static final String READ = "READ";
+	private static final String REMOVE = "REMOVE";
+	private static final String SEPARATOR = " ";
+	private static final String CHARSET = "UTF-8";
+	private static final String HASH_ALGORITHM = "MD5";
+	private static final String HEX_DIGITS = "0123456789abcdef";
+	private static final int HEX_SHIFT = 4;
+	private static final int HEX_MASK = 0x0F;
+	private static final int JPEG_QUALITY = 90;
+	private static final int REDUNDANT_OPERATIONS_THRESHOLD = 2000;
+	private static final long DEFAULT_MAX_BYTES = 20L * 1024 * 1024;
+	private static final long UNKNOWN = -1L;
+	private static final int CLEAN_PARTS = 4;
+	private static final String THREAD_NAME = "DiskImageCache #";
+	private static final long KEEP_ALIVE_SECONDS = 30L;
+	private static final ThreadPoolExecutor WRITE_EXECUTOR = createWriteExecutor();
+
+	private final File directory;
+	private final long maxBytes;
+	private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(0, 0.75f, true);
+	private final Runnable trimJob = new Runnable() {
+		@Override
+		public void run() {
+			synchronized (DiskImageCache.this) {
+				trimToSize();
+			}
+		}
+	};
+
+	private Writer journalWriter;
+	private long size;
+	private int redundantOperations;
+
+	/**
+	 * Create a cache of 20 MB inside {@link Context#getExternalCacheDir()}, or inside
+	 * {@link Context#getCacheDir()} when there is no external storage
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 */
+	public DiskImageCache(@NonNull final Context context) {
+		this(new File(getCacheDir(context), DIRECTORY_NAME), DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Create a cache in the given directory. The directory must be used only by this cache.
+	 *
+	 * @param directory The directory where the images are stored
+	 * @param maxBytes The maximum amount of bytes of the stored images
+	 */
+	public DiskImageCache(@NonNull final File directory, final long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("The cache size must be positive");
+		}
+		this.directory = directory;
+		this.maxBytes = maxBytes;
+	}
+
+	@NonNull
+	private static ThreadPoolExecutor createWriteExecutor() {
+		// A single thread keeps the writes of the same key in order
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(THREAD_NAME));
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	@NonNull
+	private static File getCacheDir(@NonNull final Context context) {
+		final File externalCacheDir = context.getExternalCacheDir();
+		return externalCacheDir == null ? context.getCacheDir() : externalCacheDir;
+	}
+
+	/**
+	 * Create the key of an image. The key changes when the source image is modified, so a stale entry
+	 * is never returned.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param imageUri The uri path of the source image
+	 * @param request The request used to decode the image
+	 * @return The key, or null if the last modified time and the size of the source cannot be known
+	 */
+	@Nullable
+	public static String createKey(@NonNull final Context context, @NonNull final Uri imageUri,
+			@NonNull final ImageRequest request) {
+		final long[] version = getSourceVersion(context, imageUri);
+		if (version == null) {
+			return null;
+		}
+		return hash(imageUri + "|" + version[0] + "|" + version[1] + "|" + request);
+	}
+
+	@Nullable
+	private static long[] getSourceVersion(@NonNull final Context context, @NonNull final Uri imageUri) {
+		if (ContentResolver.SCHEME_FILE.equals(imageUri.getScheme())) {
+			final File file = new File(imageUri.getPath());
+			return file.exists() ? new long[]{file.lastModified(), file.length()} : null;
+		}
+
+		final Cursor cursor;
+		try {
+			cursor = context.getContentResolver().query(imageUri, null, null, null, null);
+		} catch (final RuntimeException e) {
+			return null;
+		}
+		if (cursor == null) {
+			return null;
+		}
+		try {
+			if (!cursor.moveToFirst()) {
+				return null;
+			}
+			final long lastModified = getLong(cursor, MediaStore.MediaColumns.DATE_MODIFIED);
+			final long length = getLong(cursor, OpenableColumns.SIZE);
+			return lastModified == UNKNOWN || length == UNKNOWN ? null : new long[]{lastModified, length};
+		} finally {
+			cursor.close();
+		}
+	}
+
+	private static long getLong(@NonNull final Cursor cursor, @NonNull final String column) {
+		final int index = cursor.getColumnIndex(column);
+		return index < 0 || cursor.isNull(index) ? UNKNOWN : cursor.getLong(index);
+	}
+
+	@NonNull
+	private static String hash(@NonNull final String value) {
+		try {
+			final byte[] digest = MessageDigest.getInstance(HASH_ALGORITHM).digest(value.getBytes(CHARSET));
+			final StringBuilder builder = new StringBuilder(digest.length * 2);
+			for (final byte b : digest) {
+				builder.append(HEX_DIGITS.charAt((b >> HEX_SHIFT) & HEX_MASK)).append(HEX_DIGITS.charAt(b & HEX_MASK));
+			}
+			return builder.toString();
+		} catch (final NoSuchAlgorithmException | UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Read an image of the cache
+	 *
+	 * @param key The key of the image
+	 * @param imageUri The uri path of the source image
+	 * @param config The preferred pixel configuration of the image
+	 * @param recycler The recycler that receives the bitmap when the image is released, or null
+	 * @return The image with its stored rotation, or null if it is not in the cache
+	 */
+	@Nullable
+	public BitmapImage get(@NonNull final String key, @NonNull final Uri imageUri, @NonNull final Bitmap.Config config,
+			@Nullable final BitmapImage.Recycler recycler) {
+		final File file;
+		final Entry entry;
+		synchronized (this) {
+			entry = ensureOpen() ? entries.get(key) : null;
+			if (entry == null) {
+				return null;
+			}
+			file = getEntryFile(key);
+			appendJournal(READ, key, null);
+		}
+
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inPreferredConfig = config;
+		options.inMutable = recycler != null;
+		final Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+		if (bitmap == null) {
+			remove(key);
+			return null;
+		}
+		return new BitmapImage(bitmap, imageUri, entry.rotation, recycler);
+	}
+
+	/**
+	 * Write an image in the cache in background, replacing the previous one with the same key. The image is
+	 * acquired until it is written, so the caller may release it right away.
+	 *
+	 * @param key The key of the image
+	 * @param image The image, whose rotation is stored along with its data
+	 */
+	public void putAsync(@NonNull final String key, @NonNull final BitmapImage image) {
+		image.acquire();
+		WRITE_EXECUTOR.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					put(key, image);
+				} finally {
+					image.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Write an image in the cache, replacing the previous one with the same key. It compresses and syncs the image
+	 * in the calling thread, use {@link #putAsync(String, BitmapImage)} when the image is being delivered.
+	 *
+	 * @param key The key of the image
+	 * @param image The image, whose rotation is stored along with its data
+	 * @return true if the image was written
+	 */
+	public boolean put(@NonNull final String key, @NonNull final BitmapImage image) {
+		final File tempFile = new File(directory, key + "." + Thread.currentThread().getId() + TEMP_FILE_SUFFIX);
+		synchronized (this) {
+			if (!ensureOpen()) {
+				return false;
+			}
+		}
+
+		try {
+			writeBitmap(tempFile, image.getBitmap());
+		} catch (final IOException e) {
+			Log.w(TAG, "Cannot write the image " + key, e);
+			deleteFile(tempFile);
+			return false;
+		}
+
+		synchronized (this) {
+			final File file = getEntryFile(key);
+			if (!tempFile.renameTo(file)) {
+				deleteFile(tempFile);
+				return false;
+			}
+			final Entry entry = new Entry(file.length(), image.getRotation());
+			final Entry previous = entries.put(key, entry);
+			size += entry.length - (previous == null ? 0 : previous.length);
+			appendJournal(CLEAN, key, entry);
+			if (size > maxBytes) {
+				WRITE_EXECUTOR.execute(trimJob);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove an image of the cache
+	 *
+	 * @param key The key of the image
+	 */
+	public synchronized void remove(@NonNull final String key) {
+		if (!ensureOpen()) {
+			return;
+		}
+		final Entry entry = entries.remove(key);
+		if (entry != null) {
+			size -= entry.length;
+			deleteFile(getEntryFile(key));
+			appendJournal(REMOVE, key, null);
+		}
+	}
+
+	/**
+	 * @return The amount of bytes of the stored images
+	 */
+	public synchronized long getSize() {
+		return ensureOpen() ? size : 0;
+	}
+
+	public long getMaxSize() {
+		return maxBytes;
+	}
+
+	private static void writeBitmap(@NonNull final File file, @NonNull final Bitmap bitmap) throws IOException {
+		final Bitmap.CompressFormat format = bitmap.hasAlpha() ? Bitmap.CompressFormat.PNG
+				: Bitmap.CompressFormat.JPEG;
+		BitmapWriter.compress(file, bitmap, format, JPEG_QUALITY);
+	}
+
+	@NonNull
+	private File getEntryFile(@NonNull final String key) {
+		return new File(directory, key);
+	}
+
+	private boolean ensureOpen() {
+		if (journalWriter != null) {
+			return true;
+		}
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			return false;
+		}
+		try {
+			readJournal();
+			deleteOrphanFiles();
+			rebuildJournal();
+		} catch (final IOException e) {
+			Log.w(TAG, "Cannot open the cache", e);
+			entries.clear();
+			size = 0;
+			return false;
+		}
+		trimToSize();
+		return true;
+	}
+
+	private void readJournal() throws IOException {
+		final File journal = new File(directory, JOURNAL_FILE);
+		if (!journal.exists()) {
+			return;
+		}
+		final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(journal), CHARSET));
+		try {
+			if (!MAGIC.equals(reader.readLine()) || !VERSION.equals(reader.readLine())) {
+				return;
+			}
+			String line = reader.readLine();
+			// A crash may leave a truncated last line, everything before it is still valid
+			while (line != null && readJournalLine(line)) {
+				line = reader.readLine();
+			}
+		} finally {
+			closeQuietly(reader);
+		}
+
+		final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			final Map.Entry<String, Entry> entry = iterator.next();
+			if (getEntryFile(entry.getKey()).length() == entry.getValue().length) {
+				size += entry.getValue().length;
+			} else {
+				iterator.remove();
+			}
+		}
+	}
+
+	private boolean readJournalLine(@NonNull final String line) {
+		final String[] parts = line.split(SEPARATOR);
+		if (CLEAN.equals(parts[0]) && parts.length == CLEAN_PARTS) {
+			try {
+				entries.put(parts[1], new Entry(Long.parseLong(parts[2]), Integer.parseInt(parts[CLEAN_PARTS - 1])));
+			} catch (final NumberFormatException e) {
+				return false;
+			}
+		} else if (READ.equals(parts[0]) && parts.length == 2) {
+			entries.get(parts[1]);
+		} else if (REMOVE.equals(parts[0]) && parts.length == 2) {
+			entries.remove(parts[1]);
+		} else {
+			return false;
+		}
+		return true;
+	}
+
+	private void deleteOrphanFiles() {
+		final File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (final File file : files) {
+			final String name = file.getName();
+			if (!JOURNAL_FILE.equals(name) && !entries.containsKey(name)) {
+				deleteFile(file);
+			}
+		}
+	}
+
+	private void rebuildJournal() throws IOException {
+		if (journalWriter != null) {
+			closeQuietly(journalWriter);
+			journalWriter = null;
+		}
+		final File tempJournal = new File(directory, JOURNAL_FILE_TEMP);
+		final FileOutputStream fileOutputStream = new FileOutputStream(tempJournal);
+		try {
+			final Writer writer = new BufferedWriter(new OutputStreamWriter(fileOutputStream, CHARSET));
+			writer.write(MAGIC + "\n" + VERSION + "\n");
+			for (final Map.Entry<String, Entry> entry : entries.entrySet()) {
+				writer.write(CLEAN + SEPARATOR + entry.getKey() + SEPARATOR + entry.getValue() + "\n");
+			}
+			writer.flush();
+			fileOutputStream.getFD().sync();
+		} finally {
+			fileOutputStream.close();
+		}
+		if (!tempJournal.renameTo(new File(directory, JOURNAL_FILE))) {
+			throw new IOException("Cannot replace the journal");
+		}
+		journalWriter = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(new File(directory, JOURNAL_FILE), true), CHARSET));
+		redundantOperations = 0;
+	}
+
+	private void appendJournal(@NonNull final String operation, @NonNull final String key,
+			@Nullable final Entry entry) {
+		try {
+			journalWriter.write(operation + SEPARATOR + key + (entry == null ? "" : SEPARATOR + entry) + "\n");
+			journalWriter.flush();
+			redundantOperations++;
+			if (redundantOperations >= REDUNDANT_OPERATIONS_THRESHOLD && redundantOperations >= entries.size()) {
+				rebuildJournal();
+			}
+		} catch (final IOException e) {
+			Log.w(TAG, "Cannot write the journal", e);
+		}
+	}
+
+	private void trimToSize() {
+		if (journalWriter == null) {
+			return;
+		}
+		final List<String> removedKeys = new ArrayList<>();
+		final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		while (size > maxBytes && iterator.hasNext()) {
+			final Map.Entry<String, Entry> eldest = iterator.next();
+			size -= eldest.getValue().length;
+			removedKeys.add(eldest.getKey());
+			iterator.remove();
+		}
+		for (final String key : removedKeys) {
+			deleteFile(getEntryFile(key));
+			appendJournal(REMOVE, key, null);
+		}
+	}
+
+	private static void deleteFile(@NonNull final File file) {
+		if (file.exists() && !file.delete()) {
+			Log.w(TAG, "Cannot delete " + file);
+		}
+	}
+
+	private static void closeQuietly(@NonNull final Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (final IOException e) {
+			// Nothing to do, the content was already read or written
+		}
+	}
+
+	private static final class Entry {
+		private final long length;
+		private final int rotation;
+
+		/* default */ Entry(final long length, final int rotation) {
+			this.length = length;
+			this.rotation = rotation;
+		}
+
+		@Override
+		public String toString() {
+			return length + SEPARATOR + rotation;
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.masacre.components;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.model.BitmapImage;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * <p>
+ * A <code>ImageBatchTask</code> is the handle of several images that are being loaded in background. Each image
+ * is a separate job of the image executor, so they are decoded in parallel, and each result is delivered in the
+ * main thread to the {@link ImagePicker.OnImagesResultListener} as soon as it is ready.
+ * </p>
+ *
+ * Cancel the task when the screen that requested it is destroyed. The images that were not loaded yet are
+ * skipped, and the images loaded after the cancellation are released.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#getImagesFromResultAsync(android.content.Context, int, android.content.Intent,
+ *      com.masacre.model.ImageRequest, ImagePicker.OnImagesResultListener)
+ */
+public final class ImageBatchTask implements ImagePicker.Cancellable {
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private final AtomicInteger remaining;
+	private final int count;
+	private volatile boolean done;
+
+	/* default */ ImageBatchTask(final int count) {
+		this.count = count;
+		this.remaining = new AtomicInteger(count);
+	}
+
+	/**
+	 * Run each work in the image executor and deliver each result in the main thread
+	 *
+	 * @param works The works that load the images, in the order of the indexes given to the listener
+	 * @param listener The callback that will receive the results
+	 * @return The handle of the works
+	 */
+	@NonNull
+	/* default */ static ImageBatchTask execute(@NonNull final List<Work> works,
+			@NonNull final ImagePicker.OnImagesResultListener listener) {
+		final ImageBatchTask task = new ImageBatchTask(works.size());
+		if (works.isEmpty()) {
+			task.deliverComplete(listener);
+			return task;
+		}
+		for (int i = 0; i < works.size(); i++) {
+			ImageExecutors.getExecutor().execute(task.new Job(i, works.get(i), listener));
+		}
+		return task;
+	}
+
+	/**
+	 * Cancel the task. The images that are still waiting, for the executor or for the decode budget, will never
+	 * be decoded, and the ones that are being decoded will be discarded.
+	 *
+	 * @return true if the task was cancelled by this call, false if it was already cancelled
+	 */
+	public boolean cancel() {
+		return cancelled.compareAndSet(false, true);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled.get();
+	}
+
+	/**
+	 * Whether every result was delivered to the listener
+	 *
+	 * @return true if the task has finished
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return The amount of images of the batch
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	private void deliverResult(@NonNull final ImagePicker.OnImagesResultListener listener, final int index,
+			@Nullable final BitmapImage image, @Nullable final Exception exception) {
+		ImageExecutors.postToMainThread(new Runnable() {
+			@Override
+			public void run() {
+				if (isCancelled()) {
+					if (image != null) {
+						image.release();
+					}
+					return;
+				}
+				if (exception == null) {
+					listener.onImageResult(index, image);
+				} else {
+					listener.onImageError(index, exception);
+				}
+			}
+		});
+	}
+
+	private void deliverComplete(@NonNull final ImagePicker.OnImagesResultListener listener) {
+		ImageExecutors.postToMainThread(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCancelled()) {
+					done = true;
+					listener.onBatchComplete(count);
+				}
+			}
+		});
+	}
+
+	private final class Job implements Runnable {
+		private final int index;
+		private final Work work;
+		private final ImagePicker.OnImagesResultListener listener;
+
+		/* default */ Job(final int index, @NonNull final Work work,
+				@NonNull final ImagePicker.OnImagesResultListener listener) {
+			this.index = index;
+			this.work = work;
+			this.listener = listener;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (!isCancelled()) {
+					deliverResult(listener, index, work.call(ImageBatchTask.this), null);
+				}
+			} catch (final Exception e) {
+				deliverResult(listener, index, null, e);
+			} catch (final Throwable t) {
+				// Usually an out of memory error while decoding, the item still counts as a failed one
+				deliverResult(listener, index, null, new ExecutionException(t));
+			} finally {
+				if (remaining.decrementAndGet() == 0) {
+					deliverComplete(listener);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A work that loads one image of the batch, checking the task to stop once it is cancelled. The task is null
+	 * when the images are loaded in the calling thread.
+	 */
+	/* default */ interface Work {
+		@Nullable
+		BitmapImage call(@Nullable final ImageBatchTask task) throws Exception;
+	}
+}
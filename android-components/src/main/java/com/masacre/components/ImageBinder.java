@@ -0,0 +1,377 @@
+package com.masacre.components;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.GridLayoutManager;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.masacre.model.BitmapImage;
+import com.masacre.model.ImageRequest;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>
+ * A <code>ImageBinder</code> shows images of known uris in the image views of the view holders of a
+ * {@link ClickableRecyclerView}, decoded the same way as the picked images and at the exact size of each image view.
+ * </p>
+ *
+ * The decode of an image view is cancelled when its view holder leaves the screen and its image is released when the
+ * view holder is recycled, so a fling does not leave decodes running for views that are gone. While the list settles
+ * after a fling no decode is started, only the images of the memory cache are shown, and the views still on screen
+ * start their decodes once the list stops. When the list is idle the images of the next rows in the scroll direction
+ * are decoded into the memory cache, if a {@link PrefetchSource} and a memory cache are set.
+ *
+ * It must be used from the main thread.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setMemoryCache(BitmapMemoryCache)
+ */
+public class ImageBinder {
+	public static final int DEFAULT_PREFETCH_ROWS = 2;
+
+	private static final String TAG = "ImageBinder";
+
+	private final ClickableRecyclerView recyclerView;
+	private final Map<ImageView, Binding> bindings = new HashMap<>();
+	private final List<ImageTask> prefetchTasks = new ArrayList<>();
+	private final ScrollListener scrollListener = new ScrollListener();
+	private final PrefetchListener prefetchListener = new PrefetchListener();
+	private ImageRequest request = new ImageRequest.Builder()
+			.setScaleMode(ImageRequest.ScaleMode.CROP)
+			.setDeferRotation(true)
+			.build();
+	private ImageRequest lastRequest;
+	private PrefetchSource prefetchSource;
+	private int prefetchRows = DEFAULT_PREFETCH_ROWS;
+	private int scrollDirection = 1;
+
+	/**
+	 * Create a binder for the view holders of a recycler view
+	 *
+	 * @param recyclerView The recycler view whose view holders show the images
+	 */
+	public ImageBinder(@NonNull final ClickableRecyclerView recyclerView) {
+		this.recyclerView = recyclerView;
+		recyclerView.addOnScrollListener(scrollListener);
+		recyclerView.setImageBinder(this);
+	}
+
+	/**
+	 * Set the config and the scale mode of the images. The target size is replaced by the size of each image view.
+	 * By default the images are center cropped and their rotation is applied when they are drawn.
+	 *
+	 * @param newRequest The request whose target size is replaced
+	 */
+	public void setRequest(@NonNull final ImageRequest newRequest) {
+		this.request = newRequest;
+	}
+
+	/**
+	 * Set the source of the images of the items that are not bound yet, to decode the next rows while the list is
+	 * idle
+	 *
+	 * @param source The source of the uris, or null to stop prefetching
+	 * @param rows The amount of rows after the last visible one, or before the first one when scrolling up
+	 */
+	public void setPrefetchSource(@Nullable final PrefetchSource source, final int rows) {
+		if (rows < 0) {
+			throw new IllegalArgumentException("The amount of rows cannot be negative");
+		}
+		this.prefetchSource = source;
+		this.prefetchRows = rows;
+	}
+
+	/**
+	 * Show an image in an image view of a view holder, cancelling the image shown or being loaded before. Call it
+	 * when the view holder is bound.
+	 *
+	 * @param holder The view holder that contains the image view
+	 * @param imageView The image view
+	 * @param uri The uri of the image, or null to clear the image view
+	 */
+	public void bind(@NonNull final ClickableRecyclerView.ClickableViewHolder holder,
+			@NonNull final ImageView imageView, @Nullable final Uri uri) {
+		final Binding previous = bindings.remove(imageView);
+		if (previous != null) {
+			previous.release();
+		}
+		if (uri == null) {
+			imageView.setImageDrawable(null);
+		} else {
+			final Binding binding = new Binding(holder, imageView, uri);
+			bindings.put(imageView, binding);
+			binding.load();
+		}
+	}
+
+	/**
+	 * Cancel every decode, release the images and stop following the recycler view
+	 */
+	public void release() {
+		for (final Binding binding : bindings.values()) {
+			binding.release();
+		}
+		bindings.clear();
+		cancelPrefetch();
+		recyclerView.removeOnScrollListener(scrollListener);
+		recyclerView.setImageBinder(null);
+	}
+
+	/* default */ void onViewHolderAttached(@NonNull final RecyclerView.ViewHolder holder) {
+		for (final Binding binding : bindings.values()) {
+			if (binding.holder == holder) {
+				binding.load();
+			}
+		}
+	}
+
+	/* default */ void onViewHolderDetached(@NonNull final RecyclerView.ViewHolder holder) {
+		for (final Binding binding : bindings.values()) {
+			if (binding.holder == holder) {
+				binding.cancel();
+			}
+		}
+	}
+
+	/* default */ void onViewHolderRecycled(@NonNull final RecyclerView.ViewHolder holder) {
+		final Iterator<Binding> iterator = bindings.values().iterator();
+		while (iterator.hasNext()) {
+			final Binding binding = iterator.next();
+			if (binding.holder == holder) {
+				binding.release();
+				iterator.remove();
+			}
+		}
+	}
+
+	private boolean isSettling() {
+		return recyclerView.getScrollState() == RecyclerView.SCROLL_STATE_SETTLING;
+	}
+
+	private void onScrollStopped() {
+		for (final Binding binding : bindings.values()) {
+			// The view holders kept off screen by the recycler view load when they come back
+			if (binding.holder.itemView.getParent() != null) {
+				binding.load();
+			}
+		}
+		prefetch();
+	}
+
+	private void prefetch() {
+		cancelPrefetch();
+		final BitmapMemoryCache cache = ImagePicker.getMemoryCache();
+		final RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+		final RecyclerView.Adapter<?> adapter = recyclerView.getAdapter();
+		if (prefetchSource == null || lastRequest == null || cache == null || adapter == null
+				|| !(layoutManager instanceof LinearLayoutManager)) {
+			return;
+		}
+		final LinearLayoutManager linearLayoutManager = (LinearLayoutManager) layoutManager;
+		final int spanCount = layoutManager instanceof GridLayoutManager
+				? ((GridLayoutManager) layoutManager).getSpanCount() : 1;
+		final int count = prefetchRows * spanCount;
+		final int first = scrollDirection > 0 ? linearLayoutManager.findLastVisibleItemPosition() + 1
+				: linearLayoutManager.findFirstVisibleItemPosition() - count;
+		if (first + count <= 0) {
+			return;
+		}
+		for (int position = Math.max(0, first); position < Math.min(first + count, adapter.getItemCount());
+				position++) {
+			final Uri uri = prefetchSource.getImageUri(position);
+			if (uri != null) {
+				prefetch(cache, uri);
+			}
+		}
+	}
+
+	private void prefetch(@NonNull final BitmapMemoryCache cache, @NonNull final Uri uri) {
+		final BitmapImage cached = cache.get(uri, lastRequest);
+		if (cached == null) {
+			prefetchTasks.add(ImagePicker.loadImageAsync(recyclerView.getContext(), uri, lastRequest,
+					prefetchListener));
+		} else {
+			cached.release();
+		}
+	}
+
+	private void cancelPrefetch() {
+		for (final ImageTask task : prefetchTasks) {
+			task.cancel();
+		}
+		prefetchTasks.clear();
+	}
+
+	/**
+	 *
+	 * Interface definition for the source of the images of the items, used to decode them before they are bound
+	 *
+	 */
+	public interface PrefetchSource {
+		/**
+		 *
+		 * Called in the main thread when the list stops scrolling, for the items near the visible ones
+		 *
+		 * @param position The item position in the adapter
+		 * @return The uri of the image of the item, or null if it has no image
+		 */
+		@Nullable
+		Uri getImageUri(final int position);
+	}
+
+	/**
+	 * The image of an image view, loaded once the view is laid out and the list is not settling
+	 */
+	private final class Binding implements ImagePicker.OnImageResultListener, View.OnLayoutChangeListener {
+		/* default */ final ClickableRecyclerView.ClickableViewHolder holder;
+		/* default */ final ImageView imageView;
+		private final Uri uri;
+		private ImageTask task;
+		private BitmapImage image;
+		private boolean waitingLayout;
+
+		/* default */ Binding(@NonNull final ClickableRecyclerView.ClickableViewHolder holder,
+				@NonNull final ImageView imageView, @NonNull final Uri uri) {
+			this.holder = holder;
+			this.imageView = imageView;
+			this.uri = uri;
+		}
+
+		/**
+		 * Show the image from the memory cache, or start its decode if the list allows it
+		 */
+		/* default */ void load() {
+			if (image != null || task != null || waitingLayout) {
+				return;
+			}
+			final int width = imageView.getWidth();
+			final int height = imageView.getHeight();
+			if (width == 0 || height == 0) {
+				waitingLayout = true;
+				imageView.addOnLayoutChangeListener(this);
+				return;
+			}
+
+			final ImageRequest sizedRequest = request.buildUpon().setTargetSize(width, height).build();
+			lastRequest = sizedRequest;
+			final BitmapMemoryCache cache = ImagePicker.getMemoryCache();
+			final BitmapImage cached = cache == null ? null : cache.get(uri, sizedRequest);
+			if (cached != null) {
+				show(cached);
+			} else if (!isSettling()) {
+				task = ImagePicker.loadImageAsync(imageView.getContext(), uri, sizedRequest, this);
+			}
+		}
+
+		/**
+		 * Cancel the decode, keeping the image if it was already shown
+		 */
+		/* default */ void cancel() {
+			if (task != null) {
+				task.cancel();
+				task = null;
+			}
+			if (waitingLayout) {
+				waitingLayout = false;
+				imageView.removeOnLayoutChangeListener(this);
+			}
+		}
+
+		/* default */ void release() {
+			cancel();
+			if (image != null) {
+				// The bitmap may go back to the pool, the view must not draw it anymore
+				imageView.setImageDrawable(null);
+				image.release();
+				image = null;
+			}
+		}
+
+		@Override
+		public void onImageResult(@Nullable final BitmapImage loadedImage) {
+			task = null;
+			if (loadedImage != null) {
+				show(loadedImage);
+			}
+		}
+
+		@Override
+		public void onImageError(@NonNull final Exception exception) {
+			task = null;
+			Log.w(TAG, "Cannot load the image " + uri, exception);
+		}
+
+		@Override
+		public void onLayoutChange(final View v, final int left, final int top, final int right, final int bottom,
+				final int oldLeft, final int oldTop, final int oldRight, final int oldBottom) {
+			if (right - left > 0 && bottom - top > 0) {
+				waitingLayout = false;
+				imageView.removeOnLayoutChangeListener(this);
+				// The layout is not finished yet, the view shows the image in the next frame
+				imageView.post(new Runnable() {
+					@Override
+					public void run() {
+						if (bindings.get(imageView) == Binding.this) {
+							load();
+						}
+					}
+				});
+			}
+		}
+
+		private void show(@NonNull final BitmapImage loadedImage) {
+			image = loadedImage;
+			imageView.setImageDrawable(new OrientedBitmapDrawable(loadedImage));
+		}
+	}
+
+	/**
+	 * Holds the decodes while the list settles and prefetches once it stops
+	 */
+	private final class ScrollListener extends RecyclerView.OnScrollListener {
+		@Override
+		public void onScrollStateChanged(final RecyclerView view, final int newState) {
+			if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+				onScrollStopped();
+			} else {
+				cancelPrefetch();
+			}
+		}
+
+		@Override
+		public void onScrolled(final RecyclerView view, final int dx, final int dy) {
+			final int delta = dy == 0 ? dx : dy;
+			if (delta != 0) {
+				scrollDirection = delta > 0 ? 1 : -1;
+			}
+		}
+	}
+
+	/**
+	 * The prefetched images stay in the memory cache, the reference given to the binder is not needed
+	 */
+	private final class PrefetchListener implements ImagePicker.OnImageResultListener {
+		@Override
+		public void onImageResult(@Nullable final BitmapImage image) {
+			if (image != null) {
+				image.release();
+			}
+		}
+
+		@Override
+		public void onImageError(@NonNull final Exception exception) {
+			Log.w(TAG, "Cannot prefetch the image", exception);
+		}
+	}
+}
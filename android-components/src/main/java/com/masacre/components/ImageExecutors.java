@@ -0,0 +1,106 @@
+package com.masacre.components;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>ImageExecutors</code> class holds the threads used by the image components:
+ * a bounded background executor that runs the decode work and the main thread where the results are delivered.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class ImageExecutors {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final String THREAD_NAME = "ImagePicker #";
+	private static final int MAX_THREADS = 4;
+	private static final long KEEP_ALIVE_SECONDS = 30L;
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+	private static Executor executor;
+	private static ThreadPoolExecutor defaultExecutor;
+	private static int defaultThreads;
+
+	private ImageExecutors() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Get the executor that runs the image work, creating the default one if none was set
+	 *
+	 * @return The background executor
+	 */
+	@NonNull
+	/* default */ static synchronized Executor getExecutor() {
+		if (executor == null) {
+			if (defaultExecutor == null) {
+				defaultExecutor = createDefaultExecutor();
+			}
+			executor = defaultExecutor;
+		}
+		return executor;
+	}
+
+	/**
+	 * Replace the executor that runs the image work
+	 *
+	 * @param newExecutor The executor to use, or null to go back to the default one
+	 */
+	/* default */ static synchronized void setExecutor(@Nullable final Executor newExecutor) {
+		executor = newExecutor;
+	}
+
+	/**
+	 * Set the amount of threads of the default executor, resizing it if it already exists
+	 *
+	 * @param threads The amount of threads, or 0 to derive it from the available processors
+	 */
+	/* default */ static synchronized void setDefaultThreads(final int threads) {
+		defaultThreads = threads;
+		if (defaultExecutor != null) {
+			final int size = getDefaultThreads();
+			// The maximum size can never be lower than the core size, so the order depends on the direction
+			if (size > defaultExecutor.getMaximumPoolSize()) {
+				defaultExecutor.setMaximumPoolSize(size);
+				defaultExecutor.setCorePoolSize(size);
+			} else {
+				defaultExecutor.setCorePoolSize(size);
+				defaultExecutor.setMaximumPoolSize(size);
+			}
+		}
+	}
+
+	/**
+	 * Run the given work in the main thread
+	 *
+	 * @param runnable The work to run
+	 */
+	/* default */ static void postToMainThread(@NonNull final Runnable runnable) {
+		MAIN_HANDLER.post(runnable);
+	}
+
+	private static int getDefaultThreads() {
+		if (defaultThreads > 0) {
+			return defaultThreads;
+		}
+		return Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	@NonNull
+	private static ThreadPoolExecutor createDefaultExecutor() {
+		final int threads = getDefaultThreads();
+		final ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS,
+				TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new BackgroundThreadFactory(THREAD_NAME));
+		threadPoolExecutor.allowCoreThreadTimeOut(true);
+		return threadPoolExecutor;
+	}
+}
@@ -0,0 +1,222 @@
+package com.masacre.components;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+/**
+ * <p>
+ * A <code>ImageMetrics</code> describes where the time of one image went: the wall time, the bytes and the
+ * amount of times of each {@link Stage} of the pipeline, the decode retries and the peak of bitmap bytes held
+ * at the same time.
+ * </p>
+ *
+ * The metrics are only recorded when a {@link ImagePicker.OnImageMetricsListener} is set, otherwise the pipeline
+ * does not create them at all.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#setMetricsListener(ImagePicker.OnImageMetricsListener)
+ */
+public final class ImageMetrics {
+	private final Uri uri;
+	private final long startNanos;
+	private final long[] durations = new long[Stage.values().length];
+	private final long[] bytes = new long[Stage.values().length];
+	private final int[] counts = new int[Stage.values().length];
+	private Result result = Result.DECODED;
+	private int decodeRetries;
+	private long bitmapBytes;
+	private long peakBitmapBytes;
+	private long totalNanos;
+	private boolean successful;
+
+	/* default */ ImageMetrics(@NonNull final Uri uri) {
+		this.uri = uri;
+		this.startNanos = now();
+	}
+
+	/* default */ static long now() {
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record that a stage ended
+	 *
+	 * @param stage The stage
+	 * @param stageStartNanos The value of {@link #now()} when the stage started
+	 * @param stageBytes The bytes read, decoded or written by the stage
+	 */
+	/* default */ void record(@NonNull final Stage stage, final long stageStartNanos, final long stageBytes) {
+		final int index = stage.ordinal();
+		durations[index] += now() - stageStartNanos;
+		bytes[index] += stageBytes;
+		counts[index]++;
+	}
+
+	/* default */ void recordRetry() {
+		decodeRetries++;
+	}
+
+	/* default */ void recordAllocation(final long allocatedBytes) {
+		bitmapBytes += allocatedBytes;
+		peakBitmapBytes = Math.max(peakBitmapBytes, bitmapBytes);
+	}
+
+	/* default */ void recordRelease(final long releasedBytes) {
+		bitmapBytes -= releasedBytes;
+	}
+
+	/* default */ void setResult(@NonNull final Result result) {
+		this.result = result;
+	}
+
+	/* default */ void finish(final boolean success) {
+		this.successful = success;
+		this.totalNanos = now() - startNanos;
+	}
+
+	@NonNull
+	public Uri getUri() {
+		return uri;
+	}
+
+	/**
+	 * @param stage The stage
+	 * @return The wall time spent in the stage, in nanoseconds
+	 */
+	public long getDurationNanos(@NonNull final Stage stage) {
+		return durations[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage The stage
+	 * @return The bytes read, decoded or written by the stage
+	 */
+	public long getBytes(@NonNull final Stage stage) {
+		return bytes[stage.ordinal()];
+	}
+
+	/**
+	 * @param stage The stage
+	 * @return The amount of times the stage ran, for example the decode attempts
+	 */
+	public int getCount(@NonNull final Stage stage) {
+		return counts[stage.ordinal()];
+	}
+
+	/**
+	 * @return The decodes that were run again without a pooled bitmap, because it could not hold the image
+	 */
+	public int getDecodeRetries() {
+		return decodeRetries;
+	}
+
+	/**
+	 * @return The highest amount of bitmap bytes held at the same time by the pipeline
+	 */
+	public long getPeakBitmapBytes() {
+		return peakBitmapBytes;
+	}
+
+	/**
+	 * @return The wall time of the whole pipeline, in nanoseconds
+	 */
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	@NonNull
+	public Result getResult() {
+		return result;
+	}
+
+	/**
+	 * @return false if the pipeline ended with an error
+	 */
+	public boolean isSuccessful() {
+		return successful;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("ImageMetrics{").append(uri).append(", ").append(result)
+				.append(successful ? "" : ", failed").append(", total=").append(totalNanos).append("ns");
+		for (final Stage stage : Stage.values()) {
+			appendStage(builder, stage);
+		}
+		return builder.append(", retries=").append(decodeRetries).append(", peakBitmapBytes=")
+				.append(peakBitmapBytes).append('}').toString();
+	}
+
+	private void appendStage(@NonNull final StringBuilder builder, @NonNull final Stage stage) {
+		final int index = stage.ordinal();
+		if (counts[index] > 0) {
+			builder.append(", ").append(stage).append('=').append(durations[index]).append("ns/")
+					.append(bytes[index]).append('B');
+		}
+	}
+
+	/**
+	 * A step of the image pipeline
+	 */
+	public enum Stage {
+		/**
+		 * The content resolver opens the image
+		 */
+		OPEN,
+		/**
+		 * The size and the orientation are read from the header of the image
+		 */
+		HEADER,
+		/**
+		 * The rotation is resolved from the header or the media store
+		 */
+		ORIENTATION,
+		/**
+		 * A cheap preview is published before the full image
+		 */
+		PREVIEW,
+		/**
+		 * The image is read from the disk cache
+		 */
+		CACHE_READ,
+		/**
+		 * Each attempt to decode the pixels of the image
+		 */
+		DECODE,
+		/**
+		 * The decoded image is scaled or cropped to the target size
+		 */
+		SCALE,
+		/**
+		 * The decoded image is rotated upright
+		 */
+		ROTATION,
+		/**
+		 * The image is written to disk
+		 */
+		SAVE
+	}
+
+	/**
+	 * Where the image came from
+	 */
+	public enum Result {
+		/**
+		 * The image was decoded from its uri
+		 */
+		DECODED,
+		/**
+		 * The image was in the memory cache
+		 */
+		MEMORY_CACHE,
+		/**
+		 * The image was read from the disk cache
+		 */
+		DISK_CACHE,
+		/**
+		 * The image was saved, it was not loaded
+		 */
+		SAVED
+	}
+}
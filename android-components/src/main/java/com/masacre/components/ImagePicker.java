@@ -1,29 +1,37 @@
 package com.masacre.components;
 
 import android.app.Activity;
+import android.content.ClipData;
+import android.content.ContentResolver;
+import android.content.ContentUris;
 import android.content.Context;
 import android.content.Intent;
-import android.content.pm.ResolveInfo;
-import android.content.res.AssetFileDescriptor;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
 import android.graphics.Matrix;
-import android.media.ExifInterface;
 import android.net.Uri;
+import android.os.Build;
 import android.os.Parcelable;
 import android.provider.MediaStore;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import com.masacre.image.DecodeBudget;
+import com.masacre.image.ImageHeader;
+import com.masacre.image.ImageSizing;
 import com.masacre.model.BitmapImage;
+import com.masacre.model.ImageRequest;
+import com.masacre.model.ImageSaveOptions;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
 /**
  * <p>
@@ -37,14 +45,30 @@ public final class ImagePicker {
 	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
 	private static final String RETURN_DATA = "return-data";
 	private static final String TEMP_IMAGE_NAME = "temp_image";
-	private static final int DEFAULT_MIN_WIDTH_QUALITY = 400;
-	private static final int MAX_QUALITY = 100;
+	private static final String IMAGE_MIME_TYPE = "image/*";
+	private static final String MULTIPLE_KEY_SUFFIX = "_MULTIPLE";
+	private static final int DECODE_BUDGET_FRACTION = 4;
+	private static final int PREVIEW_SIZE = 256;
+	private static final int PREVIEW_MIN_RATIO = 4;
+	private static final ImageRequest PREVIEW_REQUEST = new ImageRequest.Builder()
+			.setTargetSize(PREVIEW_SIZE, PREVIEW_SIZE)
+			.setConfig(Bitmap.Config.RGB_565)
+			.build();
+	private static final ImageSaveOptions LOSSLESS_SAVE_OPTIONS = new ImageSaveOptions.Builder()
+			.setFormat(Bitmap.CompressFormat.PNG)
+			.setQuality(ImageSaveOptions.MAX_QUALITY)
+			.build();
 	private static final int ROTATION_0 = 0;
-	private static final int ROTATION_90 = 90;
-	private static final int ROTATION_180 = 180;
-	private static final int ROTATION_270 = 270;
 	private static final int ROTATION_360 = 360;
 
+	private static volatile BitmapMemoryCache memoryCache;
+	private static volatile DiskImageCache diskCache;
+	private static volatile BitmapPool bitmapPool;
+	private static volatile DecodePolicy decodePolicy;
+	private static volatile OnImageMetricsListener metricsListener;
+	private static volatile DecodeBudget decodeBudget = new DecodeBudget(Runtime.getRuntime().maxMemory()
+			/ DECODE_BUDGET_FRACTION);
+	private static ImageSaveQueue saveQueue;
 
 
 	private ImagePicker() {
@@ -62,21 +86,27 @@ public final class ImagePicker {
 	 * @return An intent where you can choose pick a image from gallery and/or camera
 	 */
 	public static Intent getPickImageIntent(@NonNull final Context context, @NonNull final ImagePickerIntentType... imagePickerIntentTypes) {
-		final List<Intent> intentList = new ArrayList<>();
-
-		for (final ImagePickerIntentType imagePickerIntentType : imagePickerIntentTypes) {
-			if (ImagePickerIntentType.CAMERA == imagePickerIntentType) {
-				final Intent cameraIntent = getCameraIntent(context);
-				intentList.add(cameraIntent);
-			} else if (ImagePickerIntentType.GALLERY == imagePickerIntentType) {
-				final Intent galleryIntent = getGalleryIntent();
-				intentList.add(galleryIntent);
-			}
-		}
+		return getPickImageIntent(context, false, imagePickerIntentTypes);
+	}
 
-		final List<Intent> packageIntentList = createPackageIntentList(context, intentList);
+	/**
+	 *
+	 * Create an intent with the gallery and/or camera intent, where the gallery may allow to select
+	 * several images. Retrieve them with {@link #getImagesFromResult(Context, int, Intent, ImageRequest)}
+	 * or {@link #getImagesFromResultAsync(Context, int, Intent, ImageRequest, OnImagesResultListener)}.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param allowMultiple true to let the gallery return several images
+	 *
+	 * @return An intent where you can choose pick a image from gallery and/or camera
+	 */
+	public static Intent getPickImageIntent(@NonNull final Context context, final boolean allowMultiple,
+		@NonNull final ImagePickerIntentType... imagePickerIntentTypes) {
+		final Map<String, Intent> intents = createPickIntents(context, allowMultiple, imagePickerIntentTypes);
+		final List<Intent> packageIntentList = createPackageIntentList(context, intents);
 
-		if (intentList.isEmpty()) {
+		if (packageIntentList.isEmpty()) {
 			return null;
 		} else {
 			final Intent chooserIntent = Intent.createChooser(getAndRemoveLastIntent(packageIntentList),
@@ -86,8 +116,57 @@ public final class ImagePicker {
 		}
 	}
 
+	/**
+	 *
+	 * Resolve in background the apps that handle the given intent types, so the next call to
+	 * {@link #getPickImageIntent(Context, boolean, ImagePickerIntentType...)} does not have to ask the
+	 * package manager. Call it at app start. The resolved apps are kept until a package changes.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param allowMultiple true to resolve the gallery intent that allows multiple images
+	 */
+	public static void prewarmPickImageIntent(@NonNull final Context context, final boolean allowMultiple,
+		@NonNull final ImagePickerIntentType... imagePickerIntentTypes) {
+		final Context applicationContext = context.getApplicationContext();
+		ImageExecutors.getExecutor().execute(new Runnable() {
+			@Override
+			public void run() {
+				final Map<String, Intent> intents = createPickIntents(applicationContext, allowMultiple,
+						imagePickerIntentTypes);
+				for (final Map.Entry<String, Intent> intent : intents.entrySet()) {
+					ChooserTargets.getPackages(applicationContext, intent.getKey(), intent.getValue());
+				}
+			}
+		});
+	}
+
 	@NonNull
-	private static Intent getGalleryIntent() {
+	private static Map<String, Intent> createPickIntents(@NonNull final Context context, final boolean allowMultiple,
+		@NonNull final ImagePickerIntentType... imagePickerIntentTypes) {
+		final Map<String, Intent> intents = new LinkedHashMap<>();
+		for (final ImagePickerIntentType imagePickerIntentType : imagePickerIntentTypes) {
+			if (ImagePickerIntentType.CAMERA == imagePickerIntentType) {
+				intents.put(imagePickerIntentType.name(), getCameraIntent(context));
+			} else if (ImagePickerIntentType.GALLERY == imagePickerIntentType) {
+				// The multiple selection uses another action, which may resolve to other apps
+				final String key = allowMultiple ? imagePickerIntentType.name() + MULTIPLE_KEY_SUFFIX
+						: imagePickerIntentType.name();
+				intents.put(key, getGalleryIntent(allowMultiple));
+			}
+		}
+		return intents;
+	}
+
+	@NonNull
+	private static Intent getGalleryIntent(final boolean allowMultiple) {
+		if (allowMultiple) {
+			// Most galleries only honor the multiple selection with the get content action
+			final Intent galleryIntent = new Intent(Intent.ACTION_GET_CONTENT);
+			galleryIntent.setType(IMAGE_MIME_TYPE);
+			galleryIntent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+			return galleryIntent;
+		}
 		return new Intent(Intent.ACTION_PICK, MediaStore.Images.Media.EXTERNAL_CONTENT_URI);
 	}
 
@@ -105,13 +184,12 @@ public final class ImagePicker {
 	}
 
 
-	private static List<Intent> createPackageIntentList(@NonNull final Context context, @NonNull final Iterable<Intent> intents) {
+	private static List<Intent> createPackageIntentList(@NonNull final Context context,
+		@NonNull final Map<String, Intent> intents) {
 		final List<Intent> packageIntentList = new ArrayList<>();
-		for (final Intent intent : intents) {
-			final List<ResolveInfo> resInfo = context.getPackageManager().queryIntentActivities(intent, 0);
-			for (final ResolveInfo resolveInfo : resInfo) {
-				final String packageName = resolveInfo.activityInfo.packageName;
-				final Intent targetedIntent = new Intent(intent);
+		for (final Map.Entry<String, Intent> intent : intents.entrySet()) {
+			for (final String packageName : ChooserTargets.getPackages(context, intent.getKey(), intent.getValue())) {
+				final Intent targetedIntent = new Intent(intent.getValue());
 				targetedIntent.setPackage(packageName);
 				packageIntentList.add(targetedIntent);
 			}
@@ -137,6 +215,35 @@ public final class ImagePicker {
 	 */
 	public static BitmapImage getImageFromResult(final Context context, final int resultCode,
 		final Intent imageReturnedIntent) throws IOException {
+		return getImageFromResult(context, resultCode, imageReturnedIntent, ImageRequest.createDefault());
+	}
+
+	/**
+	 *
+	 * Retrieve the bitmap image in {@link Activity#onActivityResult(int, int, Intent)} or
+	 * {@link android.support.v4.app.Fragment#onActivityResult(int, int, Intent)}, decoded
+	 * with the size and config of the given request
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 * @param request The size and config that the decoded image should have
+	 *
+	 * @return The bitmap image that you have selected
+	 * @throws IOException if file cannot be opened for writing or if a problem occurs while closing this channel
+	 *
+	 */
+	public static BitmapImage getImageFromResult(final Context context, final int resultCode,
+		final Intent imageReturnedIntent, @NonNull final ImageRequest request) throws IOException {
+		return loadImageFromResult(context, resultCode, imageReturnedIntent, request, null, null);
+	}
+
+	private static BitmapImage loadImageFromResult(final Context context, final int resultCode,
+		final Intent imageReturnedIntent, @NonNull final ImageRequest request, @Nullable final ImageTask progressTask,
+		@Nullable final Cancellable cancellable) throws IOException {
 		final File imageFile = getTempFile(context);
 		if (resultCode == Activity.RESULT_OK) {
 			final Uri selectedImageUri;
@@ -148,33 +255,631 @@ public final class ImagePicker {
 				selectedImageUri = uriImageFromGallery;
 			}
 
-			Bitmap bitmap = getImageResized(context, selectedImageUri);
-			final int rotation = getRotation(context, selectedImageUri, isFromCamera);
-			bitmap = rotate(bitmap, rotation);
-
-			return new BitmapImage(bitmap, selectedImageUri);
+			return loadImage(context, selectedImageUri, isFromCamera, request, progressTask, cancellable);
 		}
 		return null;
 	}
 
+	/**
+	 *
+	 * Open the image in {@link Activity#onActivityResult(int, int, Intent)} as a {@link TiledImage}, whose
+	 * tiles are decoded on demand. Use it for images too large to be decoded at once with enough detail,
+	 * like panoramas or scanned documents.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 *
+	 * @return The tiled image that you have selected, which must be closed, or null if nothing was picked
+	 * @throws IOException if the image cannot be opened or its format does not support regions
+	 *
+	 */
+	@Nullable
+	public static TiledImage getTiledImageFromResult(final Context context, final int resultCode,
+		final Intent imageReturnedIntent) throws IOException {
+		if (resultCode != Activity.RESULT_OK) {
+			return null;
+		}
+		final File imageFile = getTempFile(context);
+		final Uri uriImageFromGallery = getUriImageFromGallery(imageReturnedIntent);
+		final boolean isFromCamera = isImageFromCamera(imageReturnedIntent, imageFile, uriImageFromGallery);
+		final Uri selectedImageUri = isFromCamera ? getUriImageFromCamera(imageFile) : uriImageFromGallery;
+
+		final ImageSource source = ImageSource.open(context, selectedImageUri, null);
+		try {
+			final int rotation = getRotation(context, source, isFromCamera);
+			final BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(source.getFileDescriptor(), false);
+			if (decoder == null) {
+				throw new IOException("Cannot decode regions of the image " + selectedImageUri);
+			}
+			return new TiledImage(source, decoder, rotation, TiledImage.DEFAULT_TILE_SIZE, Bitmap.Config.ARGB_8888);
+		} catch (final IOException | RuntimeException e) {
+			source.close();
+			throw e;
+		}
+	}
+
+	/**
+	 *
+	 * Retrieve every image that was selected with an intent that allows multiple images. The images are
+	 * decoded one after the other in the calling thread, prefer
+	 * {@link #getImagesFromResultAsync(Context, int, Intent, ImageRequest, OnImagesResultListener)}.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 * @param request The size and config that each decoded image should have
+	 *
+	 * @return The images that you have selected, empty if nothing was picked
+	 * @throws IOException if one of the images cannot be read, the ones already read are released
+	 *
+	 * @see #getPickImageIntent(Context, boolean, ImagePickerIntentType...)
+	 */
+	@NonNull
+	public static List<BitmapImage> getImagesFromResult(final Context context, final int resultCode,
+		final Intent imageReturnedIntent, @NonNull final ImageRequest request) throws IOException {
+		final List<BitmapImage> images = new ArrayList<>();
+		try {
+			final List<ImageBatchTask.Work> works = createLoadWorks(context, resultCode, imageReturnedIntent,
+					request);
+			for (final ImageBatchTask.Work work : works) {
+				final BitmapImage image = work.call(null);
+				if (image != null) {
+					images.add(image);
+				}
+			}
+		} catch (final IOException | RuntimeException e) {
+			releaseAll(images);
+			throw e;
+		} catch (final Exception e) {
+			releaseAll(images);
+			throw new IOException(e);
+		}
+		return images;
+	}
+
+	/**
+	 *
+	 * Retrieve every image that was selected with an intent that allows multiple images in background.
+	 * The images are decoded in parallel in the image executor, within a shared memory budget, and each
+	 * one is delivered in the main thread as soon as it is ready.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 * @param request The size and config that each decoded image should have
+	 * @param listener The callback that will receive each image or error
+	 *
+	 * @return The task that loads the images, cancel it when the result is not needed anymore
+	 *
+	 * @see #getPickImageIntent(Context, boolean, ImagePickerIntentType...)
+	 */
+	@NonNull
+	public static ImageBatchTask getImagesFromResultAsync(@NonNull final Context context, final int resultCode,
+		@Nullable final Intent imageReturnedIntent, @NonNull final ImageRequest request,
+		@NonNull final OnImagesResultListener listener) {
+		return ImageBatchTask.execute(createLoadWorks(context.getApplicationContext(), resultCode,
+				imageReturnedIntent, request), listener);
+	}
+
+	@NonNull
+	private static List<ImageBatchTask.Work> createLoadWorks(@NonNull final Context context, final int resultCode,
+		@Nullable final Intent imageReturnedIntent, @NonNull final ImageRequest request) {
+		final List<ImageBatchTask.Work> works = new ArrayList<>();
+		if (resultCode != Activity.RESULT_OK) {
+			return works;
+		}
+
+		final List<Uri> selectedImageUris = getUrisFromClipData(imageReturnedIntent);
+		if (selectedImageUris.isEmpty()) {
+			// A single image, either from the camera or from a gallery without multiple selection
+			works.add(new ImageBatchTask.Work() {
+				@Override
+				public BitmapImage call(@Nullable final ImageBatchTask task) throws IOException {
+					return loadImageFromResult(context, resultCode, imageReturnedIntent, request, null, task);
+				}
+			});
+		}
+		for (final Uri selectedImageUri : selectedImageUris) {
+			works.add(new ImageBatchTask.Work() {
+				@Override
+				public BitmapImage call(@Nullable final ImageBatchTask task) throws IOException {
+					return loadImage(context, selectedImageUri, false, request, null, task);
+				}
+			});
+		}
+		return works;
+	}
+
+	@NonNull
+	private static List<Uri> getUrisFromClipData(@Nullable final Intent imageReturnedIntent) {
+		final List<Uri> uris = new ArrayList<>();
+		if (imageReturnedIntent == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+			return uris;
+		}
+		final ClipData clipData = imageReturnedIntent.getClipData();
+		if (clipData != null) {
+			for (int i = 0; i < clipData.getItemCount(); i++) {
+				final Uri uri = clipData.getItemAt(i).getUri();
+				if (uri != null) {
+					uris.add(uri);
+				}
+			}
+		}
+		return uris;
+	}
+
+	private static void releaseAll(@NonNull final List<BitmapImage> images) {
+		for (final BitmapImage image : images) {
+			image.release();
+		}
+	}
+
+	private static BitmapImage loadImage(@NonNull final Context context, @NonNull final Uri imageUri,
+		final boolean isFromCamera, @NonNull final ImageRequest request, @Nullable final ImageTask progressTask,
+		@Nullable final Cancellable cancellable) throws IOException {
+		final OnImageMetricsListener listener = metricsListener;
+		if (listener == null) {
+			return loadImage(context, imageUri, isFromCamera, request, progressTask, cancellable, null);
+		}
+
+		final ImageMetrics metrics = new ImageMetrics(imageUri);
+		boolean success = false;
+		try {
+			final BitmapImage image = loadImage(context, imageUri, isFromCamera, request, progressTask, cancellable,
+					metrics);
+			success = true;
+			return image;
+		} finally {
+			metrics.finish(success);
+			listener.onImageMetrics(metrics);
+		}
+	}
+
+	private static BitmapImage loadImage(@NonNull final Context context, @NonNull final Uri imageUri,
+		final boolean isFromCamera, @NonNull final ImageRequest request, @Nullable final ImageTask progressTask,
+		@Nullable final Cancellable cancellable, @Nullable final ImageMetrics metrics) throws IOException {
+		// The camera always writes the same temp file, so its uri does not identify the image
+		final BitmapMemoryCache cache = isFromCamera ? null : memoryCache;
+		if (cache != null) {
+			final BitmapImage cachedImage = cache.get(imageUri, request);
+			if (cachedImage != null) {
+				if (metrics != null) {
+					metrics.setResult(ImageMetrics.Result.MEMORY_CACHE);
+				}
+				return cachedImage;
+			}
+		}
+
+		final BitmapPool pool = bitmapPool;
+		final DiskImageCache diskImageCache = diskCache;
+		final String diskKey = diskImageCache == null ? null : DiskImageCache.createKey(context, imageUri, request);
+		BitmapImage image = diskKey == null ? null : readDiskCache(diskImageCache, diskKey, imageUri, request, pool,
+				metrics);
+		if (image == null) {
+			image = decodeImage(context, imageUri, isFromCamera, request, pool, progressTask, cancellable, metrics);
+			if (image == null) {
+				// The task was cancelled before the full decode
+				return null;
+			}
+			if (diskKey != null) {
+				// The image is delivered without waiting for the encode and the sync of its file
+				diskImageCache.putAsync(diskKey, image);
+			}
+		}
+
+		if (cache != null) {
+			cache.put(request, image);
+		}
+		return image;
+	}
+
+	@Nullable
+	private static BitmapImage readDiskCache(@NonNull final DiskImageCache diskImageCache, @NonNull final String key,
+		@NonNull final Uri imageUri, @NonNull final ImageRequest request, @Nullable final BitmapPool pool,
+		@Nullable final ImageMetrics metrics) {
+		if (metrics == null) {
+			return diskImageCache.get(key, imageUri, request.getConfig(), pool);
+		}
+		final long start = ImageMetrics.now();
+		final BitmapImage image = diskImageCache.get(key, imageUri, request.getConfig(), pool);
+		if (image != null) {
+			metrics.record(ImageMetrics.Stage.CACHE_READ, start, image.getBitmap().getByteCount());
+			metrics.recordAllocation(image.getBitmap().getByteCount());
+			metrics.setResult(ImageMetrics.Result.DISK_CACHE);
+		}
+		return image;
+	}
+
+	@Nullable
+	private static BitmapImage decodeImage(@NonNull final Context context, @NonNull final Uri imageUri,
+		final boolean isFromCamera, @NonNull final ImageRequest request, @Nullable final BitmapPool pool,
+		@Nullable final ImageTask progressTask, @Nullable final Cancellable cancellable,
+		@Nullable final ImageMetrics metrics) throws IOException {
+		// The header and the pixels are read from the same descriptor, opened only once unless it is a pipe
+		final ImageSource source = ImageSource.open(context, imageUri, metrics);
+		try {
+			final long orientationStart = metrics == null ? 0 : ImageMetrics.now();
+			final int rotation = getRotation(context, source, isFromCamera);
+			if (metrics != null) {
+				metrics.record(ImageMetrics.Stage.ORIENTATION, orientationStart, 0);
+			}
+			if (progressTask != null) {
+				final long previewStart = metrics == null ? 0 : ImageMetrics.now();
+				final boolean proceed = publishPreview(context, source, isFromCamera, request, rotation, pool,
+						progressTask);
+				if (metrics != null) {
+					metrics.record(ImageMetrics.Stage.PREVIEW, previewStart, 0);
+				}
+				if (!proceed) {
+					return null;
+				}
+			}
+			final DecodePolicy policy = decodePolicy;
+			final ImageRequest decodeRequest = policy == null ? request : policy.adjust(request, source.getHeader(),
+					BitmapDecoder.estimatePeakBytes(source, request, rotation));
+			// Parallel decodes wait here while the images being decoded hold the whole budget
+			final DecodeBudget budget = decodeBudget;
+			final int reservation = budget.acquire(BitmapDecoder.estimatePeakBytes(source, decodeRequest, rotation));
+			try {
+				if (cancellable != null && cancellable.isCancelled()) {
+					// Cancelled while it waited, the budget goes to the decodes that are still needed
+					return null;
+				}
+				final Bitmap bitmap = BitmapDecoder.decode(source, decodeRequest, rotation, pool, metrics);
+				if (request.isDeferRotation()) {
+					return new BitmapImage(bitmap, imageUri, rotation, pool);
+				}
+				return new BitmapImage(rotate(bitmap, rotation, pool, metrics), imageUri, pool);
+			} finally {
+				budget.release(reservation);
+			}
+		} finally {
+			source.close();
+		}
+	}
+
+	/**
+	 * Publish a cheap preview of the image: the media store thumbnail if there is one, or else a decode
+	 * with a large sample size. No preview is published when the full image is not much bigger.
+	 *
+	 * @return false if the task was cancelled, so the full image must not be decoded
+	 */
+	private static boolean publishPreview(@NonNull final Context context, @NonNull final ImageSource source,
+		final boolean isFromCamera, @NonNull final ImageRequest request, final int rotation,
+		@Nullable final BitmapPool pool, @NonNull final ImageTask progressTask) throws IOException {
+		final long fullBytes = BitmapDecoder.estimatePeakBytes(source, request, rotation);
+		final long previewBytes = BitmapDecoder.estimatePeakBytes(source, PREVIEW_REQUEST, rotation);
+		if (fullBytes < previewBytes * PREVIEW_MIN_RATIO) {
+			return !progressTask.isCancelled();
+		}
+
+		Bitmap preview = isFromCamera ? null : getMediaStoreThumbnail(context, source.getUri());
+		if (preview == null) {
+			preview = BitmapDecoder.decode(source, PREVIEW_REQUEST, rotation, pool, null);
+		}
+		return progressTask.publishPreview(new BitmapImage(rotate(preview, rotation, pool, null), source.getUri(),
+				pool));
+	}
+
+	@Nullable
+	private static Bitmap getMediaStoreThumbnail(@NonNull final Context context, @NonNull final Uri imageUri) {
+		if (!ContentResolver.SCHEME_CONTENT.equals(imageUri.getScheme())
+				|| !MediaStore.AUTHORITY.equals(imageUri.getAuthority())) {
+			return null;
+		}
+		try {
+			final BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inPreferredConfig = PREVIEW_REQUEST.getConfig();
+			return MediaStore.Images.Thumbnails.getThumbnail(context.getContentResolver(),
+					ContentUris.parseId(imageUri), MediaStore.Images.Thumbnails.MINI_KIND, options);
+		} catch (final NumberFormatException | UnsupportedOperationException e) {
+			// The uri does not end with the id of the image
+			return null;
+		}
+	}
+
+	/**
+	 *
+	 * Retrieve the bitmap image in background. The content resolver access, the decode and the
+	 * rotation run in the image executor and the result is delivered in the main thread.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 * @param request The size and config that the decoded image should have
+	 * @param listener The callback that will receive the image or the error
+	 *
+	 * @return The task that loads the image, cancel it when the result is not needed anymore
+	 *
+	 * @see #setExecutor(Executor)
+	 */
+	@NonNull
+	public static ImageTask getImageFromResultAsync(@NonNull final Context context, final int resultCode,
+		@Nullable final Intent imageReturnedIntent, @NonNull final ImageRequest request,
+		@NonNull final OnImageResultListener listener) {
+		final Context applicationContext = context.getApplicationContext();
+		return ImageTask.execute(new ImageTask.Work() {
+			@Override
+			public BitmapImage call(@NonNull final ImageTask task) throws IOException {
+				return loadImageFromResult(applicationContext, resultCode, imageReturnedIntent, request, null, task);
+			}
+		}, listener);
+	}
+
+	/**
+	 *
+	 * Retrieve the bitmap image in background, delivering a cheap preview first. The preview is the media
+	 * store thumbnail when there is one, or else a decode with a large sample size, and it is followed by
+	 * the full image. When the task is cancelled after the preview the full image is not decoded.
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param resultCode The integer result code returned by the child activity
+	 *                   through its setResult().
+	 * @param imageReturnedIntent a An Intent, which can return result data to the caller
+	 *               (various data can be attached to Intent "extras").
+	 * @param request The size and config that the full image should have
+	 * @param listener The callback that will receive the preview, the image or the error
+	 *
+	 * @return The task that loads the image, cancel it when the result is not needed anymore
+	 */
+	@NonNull
+	public static ImageTask getImageFromResultProgressive(@NonNull final Context context, final int resultCode,
+		@Nullable final Intent imageReturnedIntent, @NonNull final ImageRequest request,
+		@NonNull final OnProgressiveImageListener listener) {
+		final Context applicationContext = context.getApplicationContext();
+		return ImageTask.executeProgressive(new ImageTask.Work() {
+			@Override
+			public BitmapImage call(@NonNull final ImageTask task) throws IOException {
+				return loadImageFromResult(applicationContext, resultCode, imageReturnedIntent, request, task, task);
+			}
+		}, listener);
+	}
+
+	/**
+	 * Load an image of a known uri in background, through the same caches and decode as the picked images
+	 *
+	 * @param context The Context used to open the image
+	 * @param imageUri The uri of the image
+	 * @param request The size and config that the decoded image should have
+	 * @param listener The callback that will receive the image or the error
+	 * @return The task that loads the image
+	 */
+	@NonNull
+	/* default */ static ImageTask loadImageAsync(@NonNull final Context context, @NonNull final Uri imageUri,
+		@NonNull final ImageRequest request, @NonNull final OnImageResultListener listener) {
+		final Context applicationContext = context.getApplicationContext();
+		return ImageTask.execute(new ImageTask.Work() {
+			@Override
+			public BitmapImage call(@NonNull final ImageTask task) throws IOException {
+				return loadImage(applicationContext, imageUri, false, request, null, task);
+			}
+		}, listener);
+	}
+
+	/**
+	 *
+	 * Set the executor where the images are loaded in background. By default a bounded pool of
+	 * low priority threads is used.
+	 *
+	 * @param executor The executor to use, or null to go back to the default one
+	 */
+	public static void setExecutor(@Nullable final Executor executor) {
+		ImageExecutors.setExecutor(executor);
+	}
+
+	/**
+	 *
+	 * Set the policy that adapts the decodes to the device: the bitmap config and the size of each image,
+	 * the amount of parallel decodes of the default executor and the memory they can hold. By default
+	 * the requests are decoded as they are.
+	 *
+	 * @param policy The decode policy to use, or null to disable it
+	 */
+	public static void setDecodePolicy(@Nullable final DecodePolicy policy) {
+		decodePolicy = policy;
+		decodeBudget = new DecodeBudget(policy == null ? Runtime.getRuntime().maxMemory() / DECODE_BUDGET_FRACTION
+				: policy.getDecodeBudgetBytes());
+		ImageExecutors.setDefaultThreads(policy == null ? 0 : policy.getDecodeThreads());
+	}
+
+	@Nullable
+	public static DecodePolicy getDecodePolicy() {
+		return decodePolicy;
+	}
+
+	/**
+	 *
+	 * Set the listener that receives the metrics of each loaded or saved image: the wall time and the bytes
+	 * of each stage, the decode retries and the peak of bitmap bytes. It is called in the thread that loaded
+	 * or saved the image, so it must be fast and thread safe. Without a listener no metrics are recorded.
+	 *
+	 * @param listener The metrics listener, or null to stop recording
+	 */
+	public static void setMetricsListener(@Nullable final OnImageMetricsListener listener) {
+		metricsListener = listener;
+	}
+
+	/**
+	 *
+	 * Set the cache where the images picked from the gallery are kept. When an image is in the cache it
+	 * is returned without reading it again. By default there is no cache.
+	 *
+	 * @param cache The memory cache to use, or null to disable it
+	 */
+	public static void setMemoryCache(@Nullable final BitmapMemoryCache cache) {
+		memoryCache = cache;
+	}
+
+	@Nullable
+	public static BitmapMemoryCache getMemoryCache() {
+		return memoryCache;
+	}
+
+	/**
+	 *
+	 * Set the cache where the sampled and rotated images are stored in disk. When an image is in the cache
+	 * it is read from there instead of decoding and rotating the original one. By default there is no cache.
+	 *
+	 * @param cache The disk cache to use, or null to disable it
+	 */
+	public static void setDiskCache(@Nullable final DiskImageCache cache) {
+		diskCache = cache;
+	}
+
+	@Nullable
+	public static DiskImageCache getDiskCache() {
+		return diskCache;
+	}
+
+	/**
+	 *
+	 * Set the pool whose bitmaps are reused to decode and rotate the images. The returned
+	 * {@link BitmapImage} give their bitmap back to the pool when they are released. By default there is no pool.
+	 *
+	 * @param pool The bitmap pool to use, or null to disable it
+	 *
+	 * @see BitmapImage#release()
+	 */
+	public static void setBitmapPool(@Nullable final BitmapPool pool) {
+		bitmapPool = pool;
+	}
+
+	@Nullable
+	public static BitmapPool getBitmapPool() {
+		return bitmapPool;
+	}
+
 	private static Uri getUriImageFromGallery(@Nullable final Intent imageReturnedIntent) {
 		return imageReturnedIntent == null ? null : imageReturnedIntent.getData();
 	}
 
 	/**
 	 *
-	 * Save the bitmap image to disk
+	 * Save the bitmap image to disk as a lossless PNG
 	 *
 	 * @param imageUri The path where the image will be saved
 	 * @param bitmap The image data
 	 *
 	 * @throws IOException if file cannot be opened for writing or if a problem occurs while closing this channel
 	 *
+	 * @see #saveBitmapToDisk(Uri, Bitmap, ImageSaveOptions)
 	 */
 	public static void saveBitmaptoDisk(@NonNull final Uri imageUri, @NonNull final Bitmap bitmap) throws IOException {
-		final FileOutputStream out = new FileOutputStream(imageUri.getPath());
-		bitmap.compress(Bitmap.CompressFormat.PNG, MAX_QUALITY, out);
-		out.close();
+		saveBitmapToDisk(imageUri, bitmap, LOSSLESS_SAVE_OPTIONS);
+	}
+
+	/**
+	 *
+	 * Save the bitmap image to disk with the given format and quality. The image is written to a temp file,
+	 * synced and then renamed, so the previous file is only replaced by a complete image.
+	 *
+	 * @param imageUri The path where the image will be saved
+	 * @param bitmap The image data
+	 * @param options The format and quality of the saved image
+	 * @return The size of the saved file
+	 *
+	 * @throws IOException if file cannot be opened for writing or if a problem occurs while closing this channel
+	 *
+	 */
+	public static long saveBitmapToDisk(@NonNull final Uri imageUri, @NonNull final Bitmap bitmap,
+		@NonNull final ImageSaveOptions options) throws IOException {
+		final File file = new File(imageUri.getPath());
+		final OnImageMetricsListener listener = metricsListener;
+		if (listener == null) {
+			return BitmapWriter.write(file, bitmap, options.getFormat(), options.getQuality());
+		}
+
+		final ImageMetrics metrics = new ImageMetrics(imageUri);
+		metrics.setResult(ImageMetrics.Result.SAVED);
+		boolean success = false;
+		try {
+			final long start = ImageMetrics.now();
+			final long bytes = BitmapWriter.write(file, bitmap, options.getFormat(), options.getQuality());
+			metrics.record(ImageMetrics.Stage.SAVE, start, bytes);
+			success = true;
+			return bytes;
+		} finally {
+			metrics.finish(success);
+			listener.onImageMetrics(metrics);
+		}
+	}
+
+	/**
+	 * Save an image upright, drawing its deferred rotation, if any, into a bitmap of the pool that goes back to
+	 * it once the image is written
+	 *
+	 * @param imageUri The path where the image will be saved
+	 * @param image The image to save
+	 * @param options The format and quality of the saved image
+	 * @return The size of the saved file
+	 * @throws IOException if the file cannot be written
+	 */
+	/* default */ static long saveImageToDisk(@NonNull final Uri imageUri, @NonNull final BitmapImage image,
+		@NonNull final ImageSaveOptions options) throws IOException {
+		final Bitmap bitmap = image.getBitmap();
+		final int rotation = image.getRotation();
+		if (rotation == ROTATION_0) {
+			return saveBitmapToDisk(imageUri, bitmap, options);
+		}
+
+		final BitmapPool pool = bitmapPool;
+		final int width = bitmap.getWidth();
+		final int height = bitmap.getHeight();
+		final Matrix matrix = BitmapDecoder.createRotationMatrix(width, height, rotation);
+		final Bitmap rotated = BitmapDecoder.transform(bitmap, matrix, ImageSizing.getRotatedWidth(width, height,
+				rotation), ImageSizing.getRotatedHeight(width, height, rotation), pool);
+		try {
+			return saveBitmapToDisk(imageUri, rotated, options);
+		} finally {
+			BitmapDecoder.release(rotated, pool);
+		}
+	}
+
+	/**
+	 *
+	 * Save the image to disk in background, through the shared {@link ImageSaveQueue}. The image is
+	 * acquired until it is written, so it can be released right after this call. A deferred rotation is
+	 * applied before the image is encoded, so the saved file is upright.
+	 *
+	 * @param imageUri The path where the image will be saved
+	 * @param image The image to save
+	 * @param options The format and quality of the saved image
+	 * @param listener The callback that will be called in the main thread when the image is written, or null
+	 *
+	 * @see #getSaveQueue()
+	 */
+	public static void saveImageAsync(@NonNull final Uri imageUri, @NonNull final BitmapImage image,
+		@NonNull final ImageSaveOptions options, @Nullable final ImageSaveQueue.OnImageSavedListener listener) {
+		getSaveQueue().enqueue(imageUri, image, options, listener);
+	}
+
+	/**
+	 *
+	 * Get the queue used by {@link #saveImageAsync(Uri, BitmapImage, ImageSaveOptions,
+	 * ImageSaveQueue.OnImageSavedListener)}, whose statistics report the written bytes and the throughput
+	 *
+	 * @return The shared save queue
+	 */
+	@NonNull
+	public static synchronized ImageSaveQueue getSaveQueue() {
+		if (saveQueue == null) {
+			saveQueue = new ImageSaveQueue();
+		}
+		return saveQueue;
 	}
 
 	private static boolean isImageFromCamera(@Nullable final Intent imageReturnedIntent, @
@@ -193,77 +898,18 @@ public final class ImagePicker {
 		return imageFile;
 	}
 
-	private static Bitmap decodeBitmap(@NonNull final Context context, @NonNull final Uri theUri,
-		final int sampleSize) throws FileNotFoundException {
-		final BitmapFactory.Options options = new BitmapFactory.Options();
-		options.inSampleSize = sampleSize;
-
-		final AssetFileDescriptor fileDescriptor = context.getContentResolver().openAssetFileDescriptor(theUri, "r");
-
-		return BitmapFactory.decodeFileDescriptor(fileDescriptor.getFileDescriptor(), null, options);
-	}
-
-	private static Bitmap getImageResized(@NonNull final Context context,
-		@NonNull final Uri imageUri) throws FileNotFoundException {
-		Bitmap bm = null;
-		int[] sampleSizes = new int[]{5, 3, 2, 1};
-		int i = 0;
-		do {
-			bm = decodeBitmap(context, imageUri, sampleSizes[i]);
-			i++;
-		} while (bm.getWidth() < DEFAULT_MIN_WIDTH_QUALITY && i < sampleSizes.length);
-		return bm;
-	}
-
-	private static int getRotation(@NonNull final Context context, @NonNull final Uri imageUri,
-		final boolean isFromCamera) throws IOException {
-		final int rotation;
-		if (isFromCamera) {
-			rotation = getRotationFromCamera(context, imageUri);
-		} else {
-			rotation = getRotationFromGallery(context, imageUri);
+	private static int getRotation(@NonNull final Context context, @NonNull final ImageSource source,
+		final boolean isFromCamera) {
+		final ImageHeader header = source.getHeader();
+		if (header.hasOrientation() || isFromCamera) {
+			return header.getRotation();
 		}
-		return rotation;
-	}
-
-	/**
-	 *
-	 * Get the rotation of the image that was pick from the camera
-	 *
-	 * @param context The Context the view is running in, through which it can
-	 *        access the current theme, resources, etc.
-	 * @param imageUri The uri path of the image
-	 * @return The rotation of the image
-	 */
-	private static int getRotationFromCamera(@NonNull final Context context,
-		@NonNull final Uri imageUri) throws IOException {
-		context.getContentResolver().notifyChange(imageUri, null);
-		final ExifInterface exif = new ExifInterface(imageUri.getPath());
-		final int orientation = exif.getAttributeInt(
-				ExifInterface.TAG_ORIENTATION,
-				ExifInterface.ORIENTATION_NORMAL);
-
-		final int rotate;
-		switch (orientation) {
-		case ExifInterface.ORIENTATION_ROTATE_270:
-			rotate = ROTATION_270;
-			break;
-		case ExifInterface.ORIENTATION_ROTATE_180:
-			rotate = ROTATION_180;
-			break;
-		case ExifInterface.ORIENTATION_ROTATE_90:
-			rotate = ROTATION_90;
-			break;
-		default:
-			rotate = ROTATION_0;
-			break;
-		}
-		return rotate;
+		return getRotationFromGallery(context, source.getUri());
 	}
 
 	/**
 	 *
-	 * Get the rotation of the image that was pick from gallery
+	 * Get the rotation of the image that was pick from gallery, when its header does not have it
 	 *
 	 * @param context The Context the view is running in, through which it can
 	 *        access the current theme, resources, etc.
@@ -271,24 +917,39 @@ public final class ImagePicker {
 	 * @return The rotation of the image
 	 */
 	private static int getRotationFromGallery(@NonNull final Context context, @NonNull final Uri imageUri) {
-		int result = 0;
 		final String[] columns = {MediaStore.Images.Media.ORIENTATION};
 		final Cursor cursor = context.getContentResolver().query(imageUri, columns, null, null, null);
-		if (cursor != null && cursor.moveToFirst()) {
+		if (cursor == null) {
+			return ROTATION_0;
+		}
+
+		try {
 			final int orientationColumnIndex = cursor.getColumnIndex(columns[0]);
-			result = cursor.getInt(orientationColumnIndex);
+			return cursor.moveToFirst() && orientationColumnIndex >= 0 ? cursor.getInt(orientationColumnIndex)
+					: ROTATION_0;
+		} finally {
 			cursor.close();
 		}
-
-		return result;
 	}
 
 
-	private static Bitmap rotate(@NonNull final Bitmap bm, final int rotation) {
+	private static Bitmap rotate(@NonNull final Bitmap bm, final int rotation, @Nullable final BitmapPool pool,
+		@Nullable final ImageMetrics metrics) {
 		if (rotation != ROTATION_0 && rotation != ROTATION_360) {
-			Matrix matrix = new Matrix();
-			matrix.postRotate(rotation);
-			Bitmap bmOut = Bitmap.createBitmap(bm, 0, 0, bm.getWidth(), bm.getHeight(), matrix, true);
+			final long start = metrics == null ? 0 : ImageMetrics.now();
+			final int width = bm.getWidth();
+			final int height = bm.getHeight();
+			final Matrix matrix = BitmapDecoder.createRotationMatrix(width, height, rotation);
+			final Bitmap bmOut = BitmapDecoder.transform(bm, matrix,
+					ImageSizing.getRotatedWidth(width, height, rotation),
+					ImageSizing.getRotatedHeight(width, height, rotation), pool);
+			if (metrics != null) {
+				metrics.record(ImageMetrics.Stage.ROTATION, start, bmOut.getByteCount());
+				metrics.recordAllocation(bmOut.getByteCount());
+				metrics.recordRelease(bm.getByteCount());
+			}
+			// The source goes back to the pool right away, so the next rotation can draw into it
+			BitmapDecoder.release(bm, pool);
 			return bmOut;
 		}
 		return bm;
@@ -297,4 +958,102 @@ public final class ImagePicker {
 	public enum ImagePickerIntentType {
 		CAMERA, GALLERY
 	}
-}
\ No newline at end of file
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread when an image
+	 * loaded in background is ready or has failed.
+	 *
+	 */
+	public interface OnImageResultListener {
+		/**
+		 *
+		 * Called when the image was loaded
+		 *
+		 * @param image The bitmap image that you have selected, or null if nothing was picked
+		 */
+		void onImageResult(@Nullable final BitmapImage image);
+
+		/**
+		 *
+		 * Called when the image could not be loaded
+		 *
+		 * @param exception The cause of the error, an {@link java.util.concurrent.ExecutionException} wrapping it
+		 *        when it is an error like {@link OutOfMemoryError}
+		 */
+		void onImageError(@NonNull final Exception exception);
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread for each image of a multiple
+	 * selection loaded in background, in the order they are ready.
+	 *
+	 */
+	public interface OnImagesResultListener {
+		/**
+		 *
+		 * Called when an image was loaded
+		 *
+		 * @param index The position of the image in the selection
+		 * @param image The bitmap image, or null if nothing was picked
+		 */
+		void onImageResult(final int index, @Nullable final BitmapImage image);
+
+		/**
+		 *
+		 * Called when an image could not be loaded
+		 *
+		 * @param index The position of the image in the selection
+		 * @param exception The cause of the error, an {@link java.util.concurrent.ExecutionException} wrapping it
+		 *        when it is an error like {@link OutOfMemoryError}
+		 */
+		void onImageError(final int index, @NonNull final Exception exception);
+
+		/**
+		 *
+		 * Called after every image of the selection was delivered
+		 *
+		 * @param count The amount of images of the selection
+		 */
+		void onBatchComplete(final int count);
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread when the preview of an image
+	 * loaded progressively is ready, before the full image.
+	 *
+	 */
+	public interface OnProgressiveImageListener extends OnImageResultListener {
+		/**
+		 *
+		 * Called when the preview was loaded. It is not called when the full image was cached.
+		 *
+		 * @param preview The upright low resolution image, to be replaced by the full one
+		 */
+		void onImagePreview(@NonNull final BitmapImage preview);
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked with the metrics of each loaded or saved image.
+	 *
+	 */
+	public interface OnImageMetricsListener {
+		/**
+		 *
+		 * Called in the loading or saving thread when an image pipeline ends, successfully or not
+		 *
+		 * @param metrics The metrics of the image
+		 */
+		void onImageMetrics(@NonNull final ImageMetrics metrics);
+	}
+
+	/**
+	 * A task that tells whether its result is still needed, so the work stops before a costly step
+	 */
+	/* default */ interface Cancellable {
+		boolean isCancelled();
+	}
+}
@@ -0,0 +1,315 @@
+package com.masacre.components;
+
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.model.BitmapImage;
+import com.masacre.model.ImageSaveOptions;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * <p>
+ * A <code>ImageSaveQueue</code> saves images to disk in background. The pending saves are taken in batches
+ * by a single job of the executor and written one after the other, so many saves never compete for the disk
+ * and the results of a whole batch are delivered to the main thread at once.
+ * </p>
+ *
+ * Each image is acquired while it waits in the queue and released when it was written, so the caller can
+ * release its own reference right after enqueuing it. The deferred rotation of an image is applied before it is
+ * encoded.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#saveImageAsync(Uri, BitmapImage, ImageSaveOptions, OnImageSavedListener)
+ */
+public class ImageSaveQueue {
+	private static final long NANOS_PER_MILLI = 1000000L;
+	private static final long MILLIS_PER_SECOND = 1000L;
+
+	private final Executor executor;
+	private final ArrayDeque<SaveJob> pending = new ArrayDeque<>();
+	private final Runnable drainJob = new Runnable() {
+		@Override
+		public void run() {
+			drain();
+		}
+	};
+	private boolean draining;
+	private long savedCount;
+	private long savedBytes;
+	private long writeMillis;
+	private volatile OnBatchSavedListener batchListener;
+
+	/**
+	 * Create a queue that writes in the image executor
+	 *
+	 * @see ImagePicker#setExecutor(Executor)
+	 */
+	public ImageSaveQueue() {
+		this(null);
+	}
+
+	/**
+	 * Create a queue that writes in the given executor
+	 *
+	 * @param executor The executor where the batches are written, or null to use the image executor
+	 */
+	public ImageSaveQueue(@Nullable final Executor executor) {
+		this.executor = executor;
+	}
+
+	/**
+	 * Add an image to the queue
+	 *
+	 * @param imageUri The file uri where the image will be saved
+	 * @param image The image to save, acquired until it is written
+	 * @param options The format and quality of the saved image
+	 * @param listener The callback that will be called in the main thread when the image is written, or null
+	 */
+	public void enqueue(@NonNull final Uri imageUri, @NonNull final BitmapImage image,
+			@NonNull final ImageSaveOptions options, @Nullable final OnImageSavedListener listener) {
+		final SaveJob job = new SaveJob(imageUri, image.acquire(), options, listener);
+		final boolean schedule;
+		synchronized (this) {
+			pending.add(job);
+			schedule = !draining;
+			draining = true;
+		}
+		if (schedule) {
+			try {
+				(executor == null ? ImageExecutors.getExecutor() : executor).execute(drainJob);
+			} catch (final RejectedExecutionException e) {
+				failPending(e);
+			}
+		}
+	}
+
+	/**
+	 * Set the callback that will be called in the main thread after each written batch
+	 *
+	 * @param listener The batch callback, or null to remove it
+	 */
+	public void setOnBatchSavedListener(@Nullable final OnBatchSavedListener listener) {
+		batchListener = listener;
+	}
+
+	/**
+	 * @return The amount of images waiting to be written
+	 */
+	public synchronized int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * @return The amount of images written since the queue was created
+	 */
+	public synchronized long getSavedCount() {
+		return savedCount;
+	}
+
+	/**
+	 * @return The amount of bytes written since the queue was created
+	 */
+	public synchronized long getSavedBytes() {
+		return savedBytes;
+	}
+
+	/**
+	 * @return The average bytes written per second while the queue was writing
+	 */
+	public synchronized long getBytesPerSecond() {
+		return writeMillis == 0 ? savedBytes : savedBytes * MILLIS_PER_SECOND / writeMillis;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "ImageSaveQueue{pending=" + pending.size() + ", saved=" + savedCount + ", bytes=" + savedBytes
+				+ ", bytesPerSecond=" + getBytesPerSecond() + "}";
+	}
+
+	private void drain() {
+		boolean drained = false;
+		try {
+			while (true) {
+				final List<SaveJob> batch;
+				synchronized (this) {
+					if (pending.isEmpty()) {
+						draining = false;
+						drained = true;
+						return;
+					}
+					batch = new ArrayList<>(pending);
+					pending.clear();
+				}
+				writeBatch(batch);
+			}
+		} finally {
+			if (!drained) {
+				// The next enqueue schedules the images that are still pending
+				synchronized (this) {
+					draining = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Report an error to every pending image when the executor does not take the drain job
+	 */
+	private void failPending(@NonNull final Exception exception) {
+		final List<SaveJob> batch;
+		synchronized (this) {
+			batch = new ArrayList<>(pending);
+			pending.clear();
+			draining = false;
+		}
+		for (final SaveJob job : batch) {
+			job.fail(exception);
+		}
+		ImageExecutors.postToMainThread(new BatchResult(batch, 0, 0, 0));
+	}
+
+	private void writeBatch(@NonNull final List<SaveJob> batch) {
+		final long start = System.nanoTime();
+		int batchCount = 0;
+		long batchBytes = 0;
+		for (final SaveJob job : batch) {
+			job.run();
+			if (job.error == null) {
+				batchCount++;
+				batchBytes += job.bytes;
+			}
+		}
+		final long elapsedMillis = (System.nanoTime() - start) / NANOS_PER_MILLI;
+		synchronized (this) {
+			savedCount += batchCount;
+			savedBytes += batchBytes;
+			writeMillis += elapsedMillis;
+		}
+		ImageExecutors.postToMainThread(new BatchResult(batch, batchCount, batchBytes, elapsedMillis));
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread when a queued image was saved or
+	 * could not be saved
+	 *
+	 */
+	public interface OnImageSavedListener {
+		/**
+		 *
+		 * Called when the image was written
+		 *
+		 * @param imageUri The uri where the image was saved
+		 * @param bytes The size of the saved file
+		 */
+		void onImageSaved(@NonNull final Uri imageUri, final long bytes);
+
+		/**
+		 *
+		 * Called when the image could not be written
+		 *
+		 * @param imageUri The uri where the image should have been saved
+		 * @param exception The cause of the error, an {@link ExecutionException} wrapping it when it is an error
+		 *        like {@link OutOfMemoryError}
+		 */
+		void onImageSaveError(@NonNull final Uri imageUri, @NonNull final Exception exception);
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread when a batch of images was written
+	 *
+	 */
+	public interface OnBatchSavedListener {
+		/**
+		 *
+		 * Called after the callbacks of each image of the batch
+		 *
+		 * @param count The amount of images that were saved
+		 * @param bytes The amount of bytes that were written
+		 * @param elapsedMillis The time spent writing the batch
+		 */
+		void onBatchSaved(final int count, final long bytes, final long elapsedMillis);
+	}
+
+	private static final class SaveJob implements Runnable {
+		private final Uri uri;
+		private final BitmapImage image;
+		private final ImageSaveOptions options;
+		private final OnImageSavedListener listener;
+		private long bytes;
+		private Exception error;
+
+		/* default */ SaveJob(@NonNull final Uri uri, @NonNull final BitmapImage image,
+				@NonNull final ImageSaveOptions options, @Nullable final OnImageSavedListener listener) {
+			this.uri = uri;
+			this.image = image;
+			this.options = options;
+			this.listener = listener;
+		}
+
+		@Override
+		public void run() {
+			try {
+				bytes = ImagePicker.saveImageToDisk(uri, image, options);
+			} catch (final Exception e) {
+				error = e;
+			} catch (final Throwable t) {
+				// Usually an out of memory error while encoding, the next images of the batch are still written
+				error = new ExecutionException(t);
+			} finally {
+				image.release();
+			}
+		}
+
+		/* default */ void fail(@NonNull final Exception exception) {
+			error = exception;
+			image.release();
+		}
+
+		/* default */ void deliver() {
+			if (listener == null) {
+				return;
+			}
+			if (error == null) {
+				listener.onImageSaved(uri, bytes);
+			} else {
+				listener.onImageSaveError(uri, error);
+			}
+		}
+	}
+
+	private final class BatchResult implements Runnable {
+		private final List<SaveJob> batch;
+		private final int count;
+		private final long bytes;
+		private final long elapsedMillis;
+
+		/* default */ BatchResult(@NonNull final List<SaveJob> batch, final int count, final long bytes,
+				final long elapsedMillis) {
+			this.batch = batch;
+			this.count = count;
+			this.bytes = bytes;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		@Override
+		public void run() {
+			for (final SaveJob job : batch) {
+				job.deliver();
+			}
+			final OnBatchSavedListener listener = batchListener;
+			if (listener != null) {
+				listener.onBatchSaved(count, bytes, elapsedMillis);
+			}
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package com.masacre.components;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.image.ImageHeader;
+import com.masacre.image.ImageHeaderParser;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * A <code>ImageSource</code> is an image opened once for both its header and its pixels. The header is read
+ * with the {@link ImageHeaderParser} from a buffered stream of the descriptor, and the position of the
+ * descriptor is restored afterwards, so the decode starts from the beginning without opening the image again.
+ * </p>
+ *
+ * The header is read from the bytes of the image, so it works with content uris that have no file path.
+ * Some providers, like the ones that stream from the cloud, give a pipe that cannot go back once it was read.
+ * The image of a pipe is opened again each time its descriptor is requested after a read.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class ImageSource implements Closeable {
+	private static final String READ_MODE = "r";
+	private static final int BUFFER_SIZE = 8 * 1024;
+	private static final String JPEG_MIME_TYPE = "image/jpeg";
+
+	private final ContentResolver resolver;
+	private final Uri uri;
+	private final boolean seekable;
+	private AssetFileDescriptor descriptor;
+	private boolean consumed;
+	private ImageHeader header = ImageHeader.UNKNOWN;
+
+	private ImageSource(@NonNull final ContentResolver resolver, @NonNull final Uri uri,
+			@NonNull final AssetFileDescriptor descriptor) {
+		this.resolver = resolver;
+		this.uri = uri;
+		this.descriptor = descriptor;
+		seekable = isSeekable(descriptor);
+	}
+
+	/**
+	 * Open an image and read its header
+	 *
+	 * @param context The Context the view is running in, through which it can
+	 *        access the current theme, resources, etc.
+	 * @param imageUri The uri path of the image
+	 * @param metrics The metrics where the open and the header read are recorded, or null
+	 * @return The opened image, that must be closed
+	 * @throws IOException if the image cannot be opened
+	 */
+	@NonNull
+	/* default */ static ImageSource open(@NonNull final Context context, @NonNull final Uri imageUri,
+			@Nullable final ImageMetrics metrics) throws IOException {
+		final ContentResolver resolver = context.getContentResolver();
+		final long openStart = metrics == null ? 0 : ImageMetrics.now();
+		final AssetFileDescriptor descriptor = openDescriptor(resolver, imageUri);
+		if (metrics != null) {
+			metrics.record(ImageMetrics.Stage.OPEN, openStart, descriptor.getLength());
+		}
+
+		final ImageSource source = new ImageSource(resolver, imageUri, descriptor);
+		try {
+			final long headerStart = metrics == null ? 0 : ImageMetrics.now();
+			source.header = source.readHeader();
+			if (metrics != null) {
+				metrics.record(ImageMetrics.Stage.HEADER, headerStart, 0);
+			}
+			return source;
+		} catch (final IOException | RuntimeException e) {
+			source.close();
+			throw e;
+		}
+	}
+
+	@NonNull
+	private static AssetFileDescriptor openDescriptor(@NonNull final ContentResolver resolver,
+			@NonNull final Uri imageUri) throws FileNotFoundException {
+		final AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(imageUri, READ_MODE);
+		if (descriptor == null) {
+			throw new FileNotFoundException("Cannot open the image " + imageUri);
+		}
+		return descriptor;
+	}
+
+	private static boolean isSeekable(@NonNull final AssetFileDescriptor descriptor) {
+		// The stream does not own the descriptor, so it never closes it while the decoder is still reading it
+		try {
+			new FileInputStream(descriptor.getFileDescriptor()).getChannel().position();
+			return true;
+		} catch (final IOException e) {
+			return false;
+		}
+	}
+
+	@NonNull
+	private ImageHeader readHeader() throws IOException {
+		final FileInputStream inputStream = new FileInputStream(getFileDescriptor());
+		ImageHeader parsed;
+		if (seekable) {
+			final FileChannel channel = inputStream.getChannel();
+			final long position = channel.position();
+			try {
+				parsed = ImageHeaderParser.parse(new BufferedInputStream(inputStream, BUFFER_SIZE));
+			} finally {
+				channel.position(position);
+			}
+		} else {
+			parsed = ImageHeaderParser.parse(new BufferedInputStream(inputStream, BUFFER_SIZE));
+		}
+
+		if (!parsed.hasSize()) {
+			final BitmapFactory.Options options = new BitmapFactory.Options();
+			options.inJustDecodeBounds = true;
+			BitmapFactory.decodeFileDescriptor(getFileDescriptor(), null, options);
+			final int format = JPEG_MIME_TYPE.equals(options.outMimeType) ? ImageHeader.FORMAT_JPEG
+					: parsed.getFormat();
+			parsed = new ImageHeader(format, options.outWidth, options.outHeight, parsed.getOrientation());
+		}
+		return parsed;
+	}
+
+	@NonNull
+	/* default */ Uri getUri() {
+		return uri;
+	}
+
+	@NonNull
+	/* default */ ImageHeader getHeader() {
+		return header;
+	}
+
+	/**
+	 * Give the descriptor to read the image once. A pipe that was already read is closed and the image is
+	 * opened again, so the descriptor must not be kept after the read.
+	 *
+	 * @return The descriptor positioned at the start of the image, ready to be decoded
+	 * @throws IOException if the image of a pipe cannot be opened again
+	 */
+	@NonNull
+	/* default */ FileDescriptor getFileDescriptor() throws IOException {
+		if (consumed) {
+			descriptor.close();
+			descriptor = openDescriptor(resolver, uri);
+		}
+		consumed = !seekable;
+		return descriptor.getFileDescriptor();
+	}
+
+	@Override
+	public void close() throws IOException {
+		descriptor.close();
+	}
+}
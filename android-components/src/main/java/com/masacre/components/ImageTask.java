@@ -0,0 +1,182 @@
+package com.masacre.components;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.model.BitmapImage;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * <p>
+ * A <code>ImageTask</code> is the handle of an image that is being loaded in background.
+ * The result is delivered in the main thread to the {@link ImagePicker.OnImageResultListener}
+ * unless the task was cancelled before.
+ * </p>
+ *
+ * Cancel the task when the screen that requested it is destroyed, for example in
+ * {@link android.app.Activity#onDestroy()}, so the listener is not called anymore. An image
+ * loaded after the cancellation is released.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#getImageFromResultAsync(android.content.Context, int, android.content.Intent,
+ *      com.masacre.model.ImageRequest, ImagePicker.OnImageResultListener)
+ */
+public final class ImageTask implements ImagePicker.Cancellable {
+	private final AtomicBoolean cancelled = new AtomicBoolean();
+	private volatile boolean done;
+	private ImagePicker.OnProgressiveImageListener previewListener;
+
+	/* default */ ImageTask() {
+		// Tasks are only created by the image components
+	}
+
+	/**
+	 * Run the given work in the image executor and deliver its result in the main thread
+	 *
+	 * @param work The work that loads the image
+	 * @param listener The callback that will receive the result
+	 * @return The handle of the work
+	 */
+	@NonNull
+	/* default */ static ImageTask execute(@NonNull final Work work,
+			@NonNull final ImagePicker.OnImageResultListener listener) {
+		final ImageTask task = new ImageTask();
+		ImageExecutors.getExecutor().execute(task.new Job(work, listener));
+		return task;
+	}
+
+	/**
+	 * Run the given work in the image executor and deliver its preview and its result in the main thread
+	 *
+	 * @param work The work that loads the image, which publishes the preview through the task
+	 * @param listener The callback that will receive the preview and the result
+	 * @return The handle of the work
+	 */
+	@NonNull
+	/* default */ static ImageTask executeProgressive(@NonNull final Work work,
+			@NonNull final ImagePicker.OnProgressiveImageListener listener) {
+		final ImageTask task = new ImageTask();
+		task.previewListener = listener;
+		ImageExecutors.getExecutor().execute(task.new Job(work, listener));
+		return task;
+	}
+
+	/**
+	 * Cancel the task. If the image is still waiting, for the executor or for the decode budget, it will never
+	 * be decoded, and if it is being decoded the result will be discarded.
+	 *
+	 * @return true if the task was cancelled by this call, false if it was already cancelled
+	 */
+	public boolean cancel() {
+		return cancelled.compareAndSet(false, true);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled.get();
+	}
+
+	/**
+	 * Whether the result or the error was delivered to the listener
+	 *
+	 * @return true if the task has finished
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * Deliver a preview of the image in the main thread, unless the task is cancelled before
+	 *
+	 * @param preview The preview, that is released if it is not delivered
+	 * @return false if the task is cancelled, so the full image must not be loaded
+	 */
+	/* default */ boolean publishPreview(@NonNull final BitmapImage preview) {
+		final ImagePicker.OnProgressiveImageListener listener = previewListener;
+		if (isCancelled() || listener == null) {
+			preview.release();
+			return !isCancelled();
+		}
+		ImageExecutors.postToMainThread(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCancelled() && !done) {
+					listener.onImagePreview(preview);
+				} else {
+					preview.release();
+				}
+			}
+		});
+		return true;
+	}
+
+	private void deliverResult(@NonNull final ImagePicker.OnImageResultListener listener,
+			@Nullable final BitmapImage image) {
+		ImageExecutors.postToMainThread(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCancelled()) {
+					done = true;
+					listener.onImageResult(image);
+				} else if (image != null) {
+					image.release();
+				}
+			}
+		});
+	}
+
+	private void deliverError(@NonNull final ImagePicker.OnImageResultListener listener,
+			@NonNull final Exception exception) {
+		ImageExecutors.postToMainThread(new Runnable() {
+			@Override
+			public void run() {
+				if (!isCancelled()) {
+					done = true;
+					listener.onImageError(exception);
+				}
+			}
+		});
+	}
+
+	private final class Job implements Runnable {
+		private final Work work;
+		private final ImagePicker.OnImageResultListener listener;
+
+		/* default */ Job(@NonNull final Work work,
+				@NonNull final ImagePicker.OnImageResultListener listener) {
+			this.work = work;
+			this.listener = listener;
+		}
+
+		@Override
+		public void run() {
+			if (isCancelled()) {
+				return;
+			}
+			final BitmapImage image;
+			try {
+				image = work.call(ImageTask.this);
+			} catch (final Exception e) {
+				deliverError(listener, e);
+				return;
+			} catch (final Throwable t) {
+				// Usually an out of memory error while decoding, the listener must still know the load ended
+				deliverError(listener, new ExecutionException(t));
+				return;
+			}
+			deliverResult(listener, image);
+		}
+	}
+
+	/**
+	 * A work that loads an image, checking the task to stop once it is cancelled. It may publish a preview
+	 * of the image through the task before.
+	 */
+	/* default */ interface Work {
+		@Nullable
+		BitmapImage call(@NonNull final ImageTask task) throws Exception;
+	}
+}
@@ -0,0 +1,372 @@
+package com.masacre.components;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * The <code>ListDiffer</code> class calculates the shortest list of removals and insertions that turns one list
+ * into another with the linear space variant of the Myers algorithm, and dispatches them to an adapter as
+ * coalesced range notifications.
+ * </p>
+ *
+ * The common head and tail of both lists are skipped before running the algorithm, so the usual refresh, where
+ * only a few items change, costs almost nothing. An item kept in both lists whose content changed is notified as
+ * a change, with the payload of the callback if it is a {@link ClickableListAdapter.PayloadItemCallback}. A moved
+ * item is notified as a removal and an insertion.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class ListDiffer {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+
+	private ListDiffer() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Calculate the difference between two lists. It can be called from a background thread, as long as
+	 * neither list is modified meanwhile.
+	 *
+	 * @param oldList The current list
+	 * @param newList The list that replaces it
+	 * @param callback The identity and content comparison of the items
+	 * @param <T> The type of the items
+	 * @return The difference, ready to be dispatched
+	 */
+	@NonNull
+	/* default */ static <T> Diff calculate(@NonNull final List<T> oldList, @NonNull final List<T> newList,
+			@NonNull final ClickableListAdapter.ItemCallback<T> callback) {
+		final Differ<T> differ = new Differ<>(oldList, newList, callback);
+		final int oldSize = oldList.size();
+		final int newSize = newList.size();
+		int head = 0;
+		while (head < oldSize && head < newSize && differ.isSameItem(head, head)) {
+			head++;
+		}
+		int oldEnd = oldSize;
+		int newEnd = newSize;
+		while (oldEnd > head && newEnd > head && differ.isSameItem(oldEnd - 1, newEnd - 1)) {
+			oldEnd--;
+			newEnd--;
+		}
+
+		final Diff diff = new Diff();
+		differ.addMatches(diff, 0, 0, head);
+		differ.walk(diff, head, head, oldEnd, newEnd);
+		differ.addMatches(diff, oldEnd, newEnd, oldSize - oldEnd);
+		return diff;
+	}
+
+	/**
+	 * The calculated difference, as the list of operations from the start to the end of the old list
+	 */
+	/* default */ static final class Diff {
+		private static final int REMOVE = 1;
+		private static final int INSERT = 2;
+		private static final int CHANGE = 3;
+		private static final int INITIAL_CAPACITY = 16;
+
+		private int[] types = new int[INITIAL_CAPACITY];
+		private int[] positions = new int[INITIAL_CAPACITY];
+		private Object[] payloads;
+		private int size;
+
+		/* default */ void add(final int type, final int oldPosition) {
+			add(type, oldPosition, null);
+		}
+
+		/* default */ void add(final int type, final int oldPosition, @Nullable final Object payload) {
+			if (size == types.length) {
+				types = grow(types);
+				positions = grow(positions);
+				if (payloads != null) {
+					payloads = Arrays.copyOf(payloads, types.length);
+				}
+			}
+			if (payload != null && payloads == null) {
+				// Most lists have no payloads, the array is only allocated by the first one
+				payloads = new Object[types.length];
+			}
+			types[size] = type;
+			positions[size] = oldPosition;
+			if (payloads != null) {
+				payloads[size] = payload;
+			}
+			size++;
+		}
+
+		/**
+		 * @return false if both lists have the same items with the same content
+		 */
+		/* default */ boolean hasChanges() {
+			return size > 0;
+		}
+
+		/**
+		 * Notify the operations to the adapter. They are notified from the end of the list to its start, so the
+		 * position of each one is still the position in the old list, and the consecutive operations of the
+		 * same kind are notified as one range.
+		 *
+		 * @param adapter The adapter whose items were replaced
+		 */
+		/* default */ void dispatchTo(@NonNull final RecyclerView.Adapter<?> adapter) {
+			final Batch batch = new Batch(adapter);
+			for (int i = size - 1; i >= 0; i--) {
+				batch.add(types[i], positions[i], payloads == null ? null : payloads[i]);
+			}
+			batch.flush();
+		}
+
+		@NonNull
+		private static int[] grow(@NonNull final int[] array) {
+			final int[] grown = new int[array.length * 2];
+			System.arraycopy(array, 0, grown, 0, array.length);
+			return grown;
+		}
+	}
+
+	/**
+	 * Coalesces consecutive operations of the same kind in a single range notification
+	 */
+	private static final class Batch {
+		private final RecyclerView.Adapter<?> adapter;
+		private int lastType;
+		private int lastPosition;
+		private int lastCount;
+		private Object lastPayload;
+
+		/* default */ Batch(@NonNull final RecyclerView.Adapter<?> adapter) {
+			this.adapter = adapter;
+		}
+
+		/* default */ void add(final int type, final int position, @Nullable final Object payload) {
+			if (type == lastType && canMerge(type, position, payload)) {
+				lastPosition = Math.min(lastPosition, position);
+				lastCount++;
+				return;
+			}
+			flush();
+			lastType = type;
+			lastPosition = position;
+			lastCount = 1;
+			lastPayload = payload;
+		}
+
+		private boolean canMerge(final int type, final int position, @Nullable final Object payload) {
+			if (type == Diff.INSERT) {
+				// The insertions of a block all happen at the same position
+				return position >= lastPosition && position <= lastPosition + lastCount;
+			}
+			if (payload == null ? lastPayload != null : !payload.equals(lastPayload)) {
+				// A range of changes carries a single payload
+				return false;
+			}
+			// The removals and changes are visited backwards, each one right before the previous range
+			return position == lastPosition - 1;
+		}
+
+		/* default */ void flush() {
+			if (lastCount == 0) {
+				return;
+			}
+			if (lastType == Diff.REMOVE) {
+				adapter.notifyItemRangeRemoved(lastPosition, lastCount);
+			} else if (lastType == Diff.INSERT) {
+				adapter.notifyItemRangeInserted(lastPosition, lastCount);
+			} else if (lastPayload == null) {
+				adapter.notifyItemRangeChanged(lastPosition, lastCount);
+			} else {
+				adapter.notifyItemRangeChanged(lastPosition, lastCount, lastPayload);
+			}
+			lastCount = 0;
+		}
+	}
+
+	/**
+	 * Runs the algorithm over a pair of lists. The furthest points of both searches are kept in two arrays
+	 * allocated once for the whole run.
+	 *
+	 * @param <T> The type of the items
+	 */
+	private static final class Differ<T> {
+		private static final int SNAKE_SIZE = 4;
+
+		private final List<T> oldList;
+		private final List<T> newList;
+		private final ClickableListAdapter.ItemCallback<T> callback;
+		private final ClickableListAdapter.PayloadItemCallback<T> payloadCallback;
+		private final int[] snake = new int[SNAKE_SIZE];
+		private int[] forward;
+		private int[] backward;
+		private int offset;
+
+		/* default */ Differ(@NonNull final List<T> oldList, @NonNull final List<T> newList,
+				@NonNull final ClickableListAdapter.ItemCallback<T> callback) {
+			this.oldList = oldList;
+			this.newList = newList;
+			this.callback = callback;
+			this.payloadCallback = callback instanceof ClickableListAdapter.PayloadItemCallback
+					? (ClickableListAdapter.PayloadItemCallback<T>) callback : null;
+		}
+
+		/* default */ boolean isSameItem(final int oldPosition, final int newPosition) {
+			return callback.areItemsTheSame(oldList.get(oldPosition), newList.get(newPosition));
+		}
+
+		/* default */ void addMatches(@NonNull final Diff diff, final int oldStart, final int newStart,
+				final int count) {
+			for (int i = 0; i < count; i++) {
+				final T oldItem = oldList.get(oldStart + i);
+				final T newItem = newList.get(newStart + i);
+				if (!callback.areContentsTheSame(oldItem, newItem)) {
+					diff.add(Diff.CHANGE, oldStart + i,
+							payloadCallback == null ? null : payloadCallback.getChangePayload(oldItem, newItem));
+				}
+			}
+		}
+
+		/**
+		 * Add the operations that turn the old range into the new range
+		 */
+		/* default */ void walk(@NonNull final Diff diff, final int left, final int top, final int right,
+				final int bottom) {
+			if (left == right) {
+				for (int y = top; y < bottom; y++) {
+					diff.add(Diff.INSERT, left);
+				}
+				return;
+			}
+			if (top == bottom) {
+				for (int x = left; x < right; x++) {
+					diff.add(Diff.REMOVE, x);
+				}
+				return;
+			}
+			if (forward == null) {
+				// The first box is the biggest one, every box inside it fits in the same arrays
+				offset = (right - left + bottom - top + 1) / 2 + 1;
+				forward = new int[2 * offset + 1];
+				backward = new int[2 * offset + 1];
+			}
+
+			findMiddleSnake(left, top, right, bottom);
+			final int startX = snake[0];
+			final int startY = snake[1];
+			final int endX = snake[2];
+			final int endY = snake[3];
+			walk(diff, left, top, startX, startY);
+			walkSnake(diff, startX, startY, endX, endY);
+			walk(diff, endX, endY, right, bottom);
+		}
+
+		/**
+		 * Add the operations of a snake: a diagonal with at most one removal or insertion
+		 */
+		private void walkSnake(@NonNull final Diff diff, final int startX, final int startY, final int endX,
+				final int endY) {
+			int x = startX;
+			int y = startY;
+			while (x < endX && y < endY && isSameItem(x, y)) {
+				addMatches(diff, x, y, 1);
+				x++;
+				y++;
+			}
+			if (endX - x > endY - y) {
+				diff.add(Diff.REMOVE, x);
+				x++;
+			} else if (endX - x < endY - y) {
+				diff.add(Diff.INSERT, x);
+				y++;
+			}
+			addMatches(diff, x, y, endX - x);
+		}
+
+		/**
+		 * Find the snake in the middle of the shortest path of a box, searching from both corners at once.
+		 * The snake is left in {@link #snake} as its start and end points.
+		 */
+		private void findMiddleSnake(final int left, final int top, final int right, final int bottom) {
+			final int delta = right - left - (bottom - top);
+			final boolean odd = (delta & 1) != 0;
+			final int max = (right - left + bottom - top + 1) / 2;
+			forward[offset + 1] = left;
+			backward[offset + 1] = bottom;
+			for (int d = 0; d <= max; d++) {
+				if (searchForward(d, delta, odd, left, top, right, bottom)
+						|| searchBackward(d, delta, odd, left, top)) {
+					return;
+				}
+			}
+			throw new IllegalStateException("No path between the lists");
+		}
+
+		private boolean searchForward(final int d, final int delta, final boolean odd, final int left, final int top,
+				final int right, final int bottom) {
+			for (int k = d; k >= -d; k -= 2) {
+				final int startX;
+				int x;
+				if (k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1]) {
+					startX = forward[offset + k + 1];
+					x = startX;
+				} else {
+					startX = forward[offset + k - 1];
+					x = startX + 1;
+				}
+				int y = top + x - left - k;
+				final int startY = d == 0 || x != startX ? y : y - 1;
+				while (x < right && y < bottom && isSameItem(x, y)) {
+					x++;
+					y++;
+				}
+				forward[offset + k] = x;
+				final int c = k - delta;
+				if (odd && c >= 1 - d && c <= d - 1 && y >= backward[offset + c]) {
+					setSnake(startX, startY, x, y);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private boolean searchBackward(final int d, final int delta, final boolean odd, final int left,
+				final int top) {
+			for (int c = d; c >= -d; c -= 2) {
+				final int startY;
+				int y;
+				if (c == -d || c != d && backward[offset + c - 1] > backward[offset + c + 1]) {
+					startY = backward[offset + c + 1];
+					y = startY;
+				} else {
+					startY = backward[offset + c - 1];
+					y = startY - 1;
+				}
+				final int k = c + delta;
+				int x = left + y - top + k;
+				final int startX = d == 0 || y != startY ? x : x + 1;
+				while (x > left && y > top && isSameItem(x - 1, y - 1)) {
+					x--;
+					y--;
+				}
+				backward[offset + c] = y;
+				if (!odd && k >= -d && k <= d && x <= forward[offset + k]) {
+					setSnake(x, y, startX, startY);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void setSnake(final int startX, final int startY, final int endX, final int endY) {
+			snake[0] = startX;
+			snake[1] = startY;
+			snake[2] = endX;
+			snake[3] = endY;
+		}
+	}
+}
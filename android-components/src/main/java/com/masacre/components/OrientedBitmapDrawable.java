@@ -0,0 +1,90 @@
+package com.masacre.components;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.masacre.model.BitmapImage;
+
+/**
+ * <p>
+ * A <code>OrientedBitmapDrawable</code> draws a {@link BitmapImage} applying its rotation at draw time,
+ * so an image decoded with a deferred rotation is shown correctly without a rotated copy of its bitmap.
+ * </p>
+ *
+ * The image is stretched to the bounds of the drawable, and its intrinsic size is the rotated one.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see com.masacre.model.ImageRequest.Builder#setDeferRotation(boolean)
+ */
+public class OrientedBitmapDrawable extends Drawable {
+	private static final int MAX_ALPHA = 255;
+
+	private final BitmapImage image;
+	private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG | Paint.DITHER_FLAG);
+	private final Matrix drawMatrix = new Matrix();
+
+	/**
+	 * Create a drawable of the given image
+	 *
+	 * @param image The image to draw
+	 */
+	public OrientedBitmapDrawable(@NonNull final BitmapImage image) {
+		this.image = image;
+	}
+
+	@NonNull
+	public BitmapImage getImage() {
+		return image;
+	}
+
+	@Override
+	protected void onBoundsChange(final Rect bounds) {
+		super.onBoundsChange(bounds);
+		final Bitmap bitmap = image.getBitmap();
+		drawMatrix.set(BitmapDecoder.createRotationMatrix(bitmap.getWidth(), bitmap.getHeight(), image.getRotation()));
+		drawMatrix.postScale((float) bounds.width() / image.getWidth(), (float) bounds.height() / image.getHeight());
+		drawMatrix.postTranslate(bounds.left, bounds.top);
+	}
+
+	@Override
+	public void draw(@NonNull final Canvas canvas) {
+		canvas.drawBitmap(image.getBitmap(), drawMatrix, paint);
+	}
+
+	@Override
+	public int getIntrinsicWidth() {
+		return image.getWidth();
+	}
+
+	@Override
+	public int getIntrinsicHeight() {
+		return image.getHeight();
+	}
+
+	@Override
+	public void setAlpha(final int alpha) {
+		paint.setAlpha(alpha);
+		invalidateSelf();
+	}
+
+	@Override
+	public void setColorFilter(@Nullable final ColorFilter colorFilter) {
+		paint.setColorFilter(colorFilter);
+		invalidateSelf();
+	}
+
+	@Override
+	public int getOpacity() {
+		return image.getBitmap().hasAlpha() || paint.getAlpha() < MAX_ALPHA ? PixelFormat.TRANSLUCENT
+				: PixelFormat.OPAQUE;
+	}
+}
@@ -1,11 +1,16 @@
 package com.masacre.components;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.widget.SwipeRefreshLayout;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
 
 /**
  * <p>
@@ -15,14 +20,53 @@ import android.view.MotionEvent;
  *
  * To handle this event you must register a {@link PullDownListener}
  *
+ * The layout can also schedule the refreshes itself with an {@link OnRefreshJobListener}: a pull or a call to
+ * {@link #requestRefresh()} while a {@link RefreshJob} is running joins it instead of starting another one, a
+ * refresh requested before the minimum interval since the last one is skipped, and {@link #restartRefresh()}
+ * cancels the running job in favor of a new full one. Each job receives the since token returned by the last
+ * successful job, so only what changed since then needs to be fetched.
+ *
+ * When the listener is an {@link OnSpeculativeRefreshListener} the job starts as soon as the pull crosses a
+ * fraction of the trigger distance, before the finger is lifted. The job is cancelled if the pull is released below
+ * the trigger distance, and it becomes the refresh if the pull commits.
+ *
  * @author Martin Purita - martinpurita@gmail.com
  *
  * @see PullDownListener
  *
  */
 public class PullDownSwipeRefreshLayout extends SwipeRefreshLayout {
+	public static final float DEFAULT_SPECULATIVE_FRACTION = 0.6f;
+
+	private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+	/**
+	 * The ratio between the finger movement and the pull of the {@link SwipeRefreshLayout}, when the pull comes from
+	 * its own touch events. A pull from a nested scrolling child follows the unconsumed scroll instead.
+	 */
+	private static final float DRAG_RATE = 0.5f;
+	/**
+	 * The default trigger distance of the {@link SwipeRefreshLayout}
+	 */
+	private static final int DEFAULT_TRIGGER_DISTANCE_DIP = 64;
 
 	private PullDownListener pullDownListener;
+	private OnRefreshListener onRefreshListener;
+	private OnRefreshJobListener onRefreshJobListener;
+	private RefreshJob runningJob;
+	private String sinceToken;
+	private long minRefreshIntervalMillis;
+	private long lastRefreshMillis;
+	private boolean refreshed;
+	private boolean awaitingPulledRefresh;
+	private float speculativeFraction = DEFAULT_SPECULATIVE_FRACTION;
+	private final int touchSlop;
+	private float triggerDistance;
+	private float initialDownY;
+	private float initialMotionY;
+	private boolean beingDragged;
+	private boolean trackingPull;
+	private boolean nestedScrollInProgress;
+	private float nestedPull;
 
 	/**
 	 *
@@ -34,11 +78,20 @@ public class PullDownSwipeRefreshLayout extends SwipeRefreshLayout {
 	 */
 	public PullDownSwipeRefreshLayout(@NonNull final Context context, @Nullable final AttributeSet attrs) {
 		super(context, attrs);
+		touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+		triggerDistance = DEFAULT_TRIGGER_DISTANCE_DIP * getResources().getDisplayMetrics().density;
+		super.setOnRefreshListener(new OnRefreshListener() {
+			@Override
+			public void onRefresh() {
+				onPulledToRefresh();
+			}
+		});
 	}
 
 	/**
 	 * Register a callback to be invoked when you pull down the swipe refresh layout
-	 * before calling {@link OnRefreshListener#onRefresh()}
+	 * before calling {@link OnRefreshListener#onRefresh()}. It is only invoked when the pull goes past the
+	 * trigger distance.
 	 *
 	 * @param pullDownListener The callback that will run
 	 */
@@ -47,11 +100,277 @@ public class PullDownSwipeRefreshLayout extends SwipeRefreshLayout {
 	}
 
 	@Override
-	public boolean onTouchEvent(final MotionEvent ev) {
-		if (ev.getAction() == ev.ACTION_UP && pullDownListener != null) {
+	public void setOnRefreshListener(@Nullable final OnRefreshListener listener) {
+		this.onRefreshListener = listener;
+	}
+
+	/**
+	 * Register a callback to run the refreshes scheduled by the layout. The layout shows the progress while a job
+	 * is running and hides it when the job finishes.
+	 *
+	 * @param listener The callback that will run the refresh jobs, or null to stop scheduling them
+	 */
+	public void setOnRefreshJobListener(@Nullable final OnRefreshJobListener listener) {
+		cancelRefresh();
+		this.onRefreshJobListener = listener;
+	}
+
+	/**
+	 * Set the minimum time between the end of a successful refresh and the start of the next one. The refreshes
+	 * requested before are skipped. It is 0 by default.
+	 *
+	 * @param millis The minimum interval in milliseconds
+	 */
+	public void setMinRefreshInterval(final long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("The minimum interval cannot be negative");
+		}
+		this.minRefreshIntervalMillis = millis;
+	}
+
+	/**
+	 * Set how far the pull must go, as a fraction of the trigger distance, to start the job of an
+	 * {@link OnSpeculativeRefreshListener} before the pull is released
+	 *
+	 * @param fraction The fraction, between 0 and 1
+	 */
+	public void setSpeculativeFraction(final float fraction) {
+		if (fraction < 0f || fraction > 1f) {
+			throw new IllegalArgumentException("The fraction must be between 0 and 1");
+		}
+		this.speculativeFraction = fraction;
+	}
+
+	@Override
+	public void setDistanceToTriggerSync(final int distance) {
+		super.setDistanceToTriggerSync(distance);
+		this.triggerDistance = distance;
+	}
+
+	/**
+	 * Set the since token of the next refresh, for example one saved with the rest of the state of the screen
+	 *
+	 * @param token The token, or null to fetch everything in the next refresh
+	 */
+	public void setSinceToken(@Nullable final String token) {
+		this.sinceToken = token;
+	}
+
+	/**
+	 * @return The token returned by the last successful refresh, or null if none was returned
+	 */
+	@Nullable
+	public String getSinceToken() {
+		return sinceToken;
+	}
+
+	/**
+	 * Start a refresh job as if the layout was pulled. Nothing is started while a job is running or before the
+	 * minimum interval since the last refresh.
+	 *
+	 * @return true if a job was started by this call
+	 */
+	public boolean requestRefresh() {
+		if (onRefreshJobListener == null || runningJob != null || isThrottled()) {
+			return false;
+		}
+		startJob();
+		return true;
+	}
+
+	/**
+	 * Cancel the running job, if any, and start a new one that fetches everything. Use it when the running job
+	 * is superseded, for example when the query of the list changed.
+	 */
+	public void restartRefresh() {
+		if (onRefreshJobListener == null) {
+			return;
+		}
+		cancelJob();
+		sinceToken = null;
+		startJob();
+	}
+
+	/**
+	 * Cancel the running job, if any, and hide the progress
+	 */
+	public void cancelRefresh() {
+		cancelJob();
+		setRefreshing(false);
+	}
+
+	/**
+	 * @return The running refresh job, or null if there is none
+	 */
+	@Nullable
+	public RefreshJob getRunningJob() {
+		return runningJob;
+	}
+
+	@Override
+	public boolean dispatchTouchEvent(final MotionEvent ev) {
+		final int action = ev.getActionMasked();
+		if (action == MotionEvent.ACTION_DOWN) {
+			trackingPull = onRefreshJobListener instanceof OnSpeculativeRefreshListener && isEnabled()
+					&& !isRefreshing() && runningJob == null;
+			initialDownY = ev.getY();
+			beingDragged = false;
+		} else if (action == MotionEvent.ACTION_MOVE && trackingPull && !nestedScrollInProgress) {
+			trackTouchPull(ev.getY());
+		}
+		final boolean handled = super.dispatchTouchEvent(ev);
+		if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+			trackingPull = false;
+			onPullReleased();
+		}
+		return handled;
+	}
+
+	@Override
+	public void onNestedScrollAccepted(final View child, final View target, final int axes) {
+		super.onNestedScrollAccepted(child, target, axes);
+		// The layout ignores its own touch events while a child scrolls, the pull is the unconsumed scroll
+		nestedScrollInProgress = true;
+		nestedPull = 0f;
+	}
+
+	@Override
+	public void onNestedPreScroll(final View target, final int dx, final int dy, final int[] consumed) {
+		if (dy > 0 && nestedPull > 0f) {
+			nestedPull = Math.max(0f, nestedPull - dy);
+		}
+		super.onNestedPreScroll(target, dx, dy, consumed);
+	}
+
+	@Override
+	public void onNestedScroll(final View target, final int dxConsumed, final int dyConsumed,
+			final int dxUnconsumed, final int dyUnconsumed) {
+		super.onNestedScroll(target, dxConsumed, dyConsumed, dxUnconsumed, dyUnconsumed);
+		if (dyUnconsumed < 0 && !canChildScrollUp()) {
+			nestedPull -= dyUnconsumed;
+			if (trackingPull) {
+				onPulled(nestedPull);
+			}
+		}
+	}
+
+	@Override
+	public void onStopNestedScroll(final View target) {
+		super.onStopNestedScroll(target);
+		nestedScrollInProgress = false;
+		nestedPull = 0f;
+	}
+
+	/**
+	 * Follow a pull of the touch events of the layout the way it does: the drag starts past the touch slop and the
+	 * pull is the finger movement since then, at the drag rate
+	 */
+	private void trackTouchPull(final float y) {
+		if (canChildScrollUp()) {
+			return;
+		}
+		if (!beingDragged) {
+			if (y - initialDownY <= touchSlop) {
+				return;
+			}
+			initialMotionY = initialDownY + touchSlop;
+			beingDragged = true;
+		}
+		onPulled((y - initialMotionY) * DRAG_RATE);
+	}
+
+	private void onPulled(final float distance) {
+		if (distance >= speculativeFraction * triggerDistance && runningJob == null && !isThrottled()) {
+			trackingPull = false;
+			runningJob = new RefreshJob(this, sinceToken, false);
+			onRefreshJobListener.onRefresh(runningJob);
+		}
+	}
+
+	/**
+	 * The layout starts refreshing right when a pull past the trigger distance is released
+	 */
+	private void onPullReleased() {
+		final RefreshJob job = runningJob;
+		if (job == null || job.committed) {
+			return;
+		}
+		if (isRefreshing()) {
+			commitJob(job);
+		} else {
+			cancelJob();
+		}
+	}
+
+	private void commitJob(@NonNull final RefreshJob job) {
+		job.committed = true;
+		// Hiding the progress during the start animation would skip the refresh callbacks of the pull
+		awaitingPulledRefresh = true;
+		if (onRefreshJobListener instanceof OnSpeculativeRefreshListener) {
+			((OnSpeculativeRefreshListener) onRefreshJobListener).onRefreshCommitted(job);
+		}
+	}
+
+	private void onPulledToRefresh() {
+		awaitingPulledRefresh = false;
+		if (pullDownListener != null) {
 			pullDownListener.onPullDown();
 		}
-		return super.onTouchEvent(ev);
+		if (onRefreshListener != null) {
+			onRefreshListener.onRefresh();
+		}
+		final RefreshJob job = runningJob;
+		if (job != null && job.finished) {
+			// The job of the pull finished before the layout was done starting the refresh
+			onJobFinished(job, job.successful, job.nextSinceToken);
+		} else if (onRefreshJobListener != null && !requestRefresh() && runningJob == null) {
+			// Throttled, the data is still fresh
+			setRefreshing(false);
+		}
+	}
+
+	private boolean isThrottled() {
+		return refreshed && SystemClock.elapsedRealtime() - lastRefreshMillis < minRefreshIntervalMillis;
+	}
+
+	private void startJob() {
+		runningJob = new RefreshJob(this, sinceToken, true);
+		setRefreshing(true);
+		onRefreshJobListener.onRefresh(runningJob);
+	}
+
+	private void cancelJob() {
+		awaitingPulledRefresh = false;
+		final RefreshJob job = runningJob;
+		if (job != null) {
+			runningJob = null;
+			job.cancelled = true;
+			if (onRefreshJobListener != null) {
+				onRefreshJobListener.onRefreshCancelled(job);
+			}
+		}
+	}
+
+	/* default */ void onJobFinished(@NonNull final RefreshJob job, final boolean successful,
+			@Nullable final String nextSinceToken) {
+		if (job != runningJob) {
+			// Cancelled or superseded
+			return;
+		}
+		if (!job.committed || awaitingPulledRefresh) {
+			// Kept until the pull is released and the layout dispatched its refresh
+			job.finished = true;
+			job.successful = successful;
+			job.nextSinceToken = nextSinceToken;
+			return;
+		}
+		runningJob = null;
+		if (successful) {
+			sinceToken = nextSinceToken;
+			refreshed = true;
+			lastRefreshMillis = SystemClock.elapsedRealtime();
+		}
+		setRefreshing(false);
 	}
 
 	public interface PullDownListener {
@@ -63,4 +382,112 @@ public class PullDownSwipeRefreshLayout extends SwipeRefreshLayout {
 		 */
 		void onPullDown();
 	}
+
+	/**
+	 *
+	 * Interface definition for the callbacks that run the refresh jobs scheduled by the layout, called in the main
+	 * thread
+	 *
+	 */
+	public interface OnRefreshJobListener {
+		/**
+		 *
+		 * Called to start a refresh. Finish the job with {@link RefreshJob#complete(String)} or
+		 * {@link RefreshJob#fail()}.
+		 *
+		 * @param job The job, with the since token of the last successful refresh
+		 */
+		void onRefresh(@NonNull final RefreshJob job);
+
+		/**
+		 *
+		 * Called when a running job is cancelled or superseded, to stop its work. Its result is ignored.
+		 *
+		 * @param job The cancelled job
+		 */
+		void onRefreshCancelled(@NonNull final RefreshJob job);
+	}
+
+	/**
+	 *
+	 * Interface definition for the callbacks that run the refresh jobs, where a job may start while the layout is
+	 * still being pulled
+	 *
+	 */
+	public interface OnSpeculativeRefreshListener extends OnRefreshJobListener {
+		/**
+		 *
+		 * Called when a pull that started a job early is released past the trigger distance, so the job becomes
+		 * the refresh. If the job was already completed it finishes after the {@link PullDownListener} and the
+		 * {@link OnRefreshListener} of the pull are called.
+		 *
+		 * @param job The committed job
+		 */
+		void onRefreshCommitted(@NonNull final RefreshJob job);
+	}
+
+	/**
+	 * A refresh started by the layout. It can be finished from any thread.
+	 */
+	public static final class RefreshJob {
+		private final PullDownSwipeRefreshLayout layout;
+		private final String sinceToken;
+		/* default */ volatile boolean cancelled;
+		/* default */ boolean committed;
+		/* default */ boolean finished;
+		/* default */ boolean successful;
+		/* default */ String nextSinceToken;
+
+		/* default */ RefreshJob(@NonNull final PullDownSwipeRefreshLayout layout, @Nullable final String sinceToken,
+				final boolean committed) {
+			this.layout = layout;
+			this.sinceToken = sinceToken;
+			this.committed = committed;
+		}
+
+		/**
+		 * @return The token returned by the last successful refresh, or null to fetch everything
+		 */
+		@Nullable
+		public String getSinceToken() {
+			return sinceToken;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		/**
+		 * @return false while the job was started by a pull that was not released yet. It must be called from the
+		 *         main thread.
+		 */
+		public boolean isCommitted() {
+			return committed;
+		}
+
+		/**
+		 * Finish the job successfully
+		 *
+		 * @param nextSinceToken The token that the next refresh receives, or null to fetch everything then
+		 */
+		public void complete(@Nullable final String nextSinceToken) {
+			finish(true, nextSinceToken);
+		}
+
+		/**
+		 * Finish the job without changing the since token, the next refresh is not throttled
+		 */
+		public void fail() {
+			finish(false, null);
+		}
+
+		private void finish(final boolean successful, @Nullable final String nextSinceToken) {
+			MAIN_HANDLER.post(new Runnable() {
+				@Override
+				public void run() {
+					layout.onJobFinished(RefreshJob.this, successful, nextSinceToken);
+				}
+			});
+		}
+	}
 }
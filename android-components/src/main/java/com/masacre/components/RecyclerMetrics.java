@@ -0,0 +1,240 @@
+package com.masacre.components;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.SparseArray;
+
+/**
+ * <p>
+ * A <code>RecyclerMetrics</code> describes where the time of a {@link ClickableRecyclerView} went: a histogram of
+ * the durations of the creation and of the binding of the view holders of each view type, and the frames drawn
+ * while the list was scrolling, with the ones that went over the frame budget.
+ * </p>
+ *
+ * The metrics are only recorded while they are enabled in the recycler view, otherwise nothing is measured. The
+ * instances given to the caller are snapshots that do not change.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ClickableRecyclerView#setMetricsEnabled(boolean)
+ */
+public final class RecyclerMetrics {
+	private final SparseArray<Histogram> createHistograms = new SparseArray<>();
+	private final SparseArray<Histogram> bindHistograms = new SparseArray<>();
+	private final Histogram frameHistogram = new Histogram();
+	private final long frameBudgetNanos;
+	private long jankFrames;
+	private long droppedFrames;
+
+	/* default */ RecyclerMetrics(final long frameBudgetNanos) {
+		this.frameBudgetNanos = frameBudgetNanos;
+	}
+
+	/* default */ static long now() {
+		return System.nanoTime();
+	}
+
+	/* default */ void recordCreate(final int viewType, final long durationNanos) {
+		getOrCreate(createHistograms, viewType).record(durationNanos);
+	}
+
+	/* default */ void recordBind(final int viewType, final long durationNanos) {
+		getOrCreate(bindHistograms, viewType).record(durationNanos);
+	}
+
+	/**
+	 * Record the time between two frames drawn while scrolling
+	 *
+	 * @param frameNanos The time since the previous frame
+	 */
+	/* default */ void recordFrame(final long frameNanos) {
+		frameHistogram.record(frameNanos);
+		if (frameNanos > frameBudgetNanos + frameBudgetNanos / 2) {
+			jankFrames++;
+			droppedFrames += Math.round((double) frameNanos / frameBudgetNanos) - 1;
+		}
+	}
+
+	/**
+	 * @return A copy that does not change when more metrics are recorded
+	 */
+	@NonNull
+	/* default */ RecyclerMetrics snapshot() {
+		final RecyclerMetrics snapshot = new RecyclerMetrics(frameBudgetNanos);
+		copy(createHistograms, snapshot.createHistograms);
+		copy(bindHistograms, snapshot.bindHistograms);
+		snapshot.frameHistogram.add(frameHistogram);
+		snapshot.jankFrames = jankFrames;
+		snapshot.droppedFrames = droppedFrames;
+		return snapshot;
+	}
+
+	/**
+	 * @return The view types that were created or bound, in ascending order
+	 */
+	@NonNull
+	public int[] getViewTypes() {
+		final SparseArray<Histogram> all = new SparseArray<>();
+		copy(createHistograms, all);
+		copy(bindHistograms, all);
+		final int[] viewTypes = new int[all.size()];
+		for (int i = 0; i < viewTypes.length; i++) {
+			viewTypes[i] = all.keyAt(i);
+		}
+		return viewTypes;
+	}
+
+	/**
+	 * @param viewType The view type
+	 * @return The durations of the creation of the view holders of the view type, or null if none was created
+	 */
+	@Nullable
+	public Histogram getCreateHistogram(final int viewType) {
+		return createHistograms.get(viewType);
+	}
+
+	/**
+	 * @param viewType The view type
+	 * @return The durations of the binding of the view holders of the view type, or null if none was bound
+	 */
+	@Nullable
+	public Histogram getBindHistogram(final int viewType) {
+		return bindHistograms.get(viewType);
+	}
+
+	/**
+	 * @return The time between the frames drawn while scrolling
+	 */
+	@NonNull
+	public Histogram getFrameHistogram() {
+		return frameHistogram;
+	}
+
+	/**
+	 * @return The time of a frame at the refresh rate of the display
+	 */
+	public long getFrameBudgetNanos() {
+		return frameBudgetNanos;
+	}
+
+	/**
+	 * @return The frames drawn while scrolling that took more than one and a half frame budgets
+	 */
+	public long getJankFrameCount() {
+		return jankFrames;
+	}
+
+	/**
+	 * @return The frames that the display could have drawn while the janky frames were running
+	 */
+	public long getDroppedFrameCount() {
+		return droppedFrames;
+	}
+
+	@Override
+	public String toString() {
+		final StringBuilder builder = new StringBuilder("RecyclerMetrics{frames=").append(frameHistogram.getCount())
+				.append(", jank=").append(jankFrames).append(", dropped=").append(droppedFrames);
+		for (final int viewType : getViewTypes()) {
+			builder.append(", type ").append(viewType).append(": create=").append(createHistograms.get(viewType))
+					.append(" bind=").append(bindHistograms.get(viewType));
+		}
+		return builder.append('}').toString();
+	}
+
+	@NonNull
+	private static Histogram getOrCreate(@NonNull final SparseArray<Histogram> histograms, final int viewType) {
+		Histogram histogram = histograms.get(viewType);
+		if (histogram == null) {
+			histogram = new Histogram();
+			histograms.put(viewType, histogram);
+		}
+		return histogram;
+	}
+
+	private static void copy(@NonNull final SparseArray<Histogram> from, @NonNull final SparseArray<Histogram> to) {
+		for (int i = 0; i < from.size(); i++) {
+			getOrCreate(to, from.keyAt(i)).add(from.valueAt(i));
+		}
+	}
+
+	/**
+	 * A histogram of durations, in buckets whose upper bound doubles from a quarter of a millisecond
+	 */
+	public static final class Histogram {
+		/**
+		 * The amount of buckets, the last one holds every duration over the previous bound
+		 */
+		public static final int BUCKET_COUNT = 10;
+
+		private static final long FIRST_BUCKET_BOUND_NANOS = 250000L;
+
+		private final long[] buckets = new long[BUCKET_COUNT];
+		private long count;
+		private long totalNanos;
+		private long maxNanos;
+
+		/* default */ Histogram() {
+			// Created by the metrics
+		}
+
+		/* default */ void record(final long nanos) {
+			int bucket = 0;
+			long bound = FIRST_BUCKET_BOUND_NANOS;
+			while (bucket < BUCKET_COUNT - 1 && nanos >= bound) {
+				bucket++;
+				bound *= 2;
+			}
+			buckets[bucket]++;
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		/* default */ void add(@NonNull final Histogram other) {
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				buckets[i] += other.buckets[i];
+			}
+			count += other.count;
+			totalNanos += other.totalNanos;
+			maxNanos = Math.max(maxNanos, other.maxNanos);
+		}
+
+		/**
+		 * @param bucket The index of the bucket
+		 * @return The upper bound of the durations of the bucket, exclusive, or {@link Long#MAX_VALUE} for the last
+		 */
+		public static long getBucketBoundNanos(final int bucket) {
+			return bucket == BUCKET_COUNT - 1 ? Long.MAX_VALUE : FIRST_BUCKET_BOUND_NANOS << bucket;
+		}
+
+		/**
+		 * @param bucket The index of the bucket
+		 * @return The amount of durations in the bucket
+		 */
+		public long getBucket(final int bucket) {
+			return buckets[bucket];
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getTotalNanos() {
+			return totalNanos;
+		}
+
+		public long getMaxNanos() {
+			return maxNanos;
+		}
+
+		public long getMeanNanos() {
+			return count == 0 ? 0 : totalNanos / count;
+		}
+
+		@Override
+		public String toString() {
+			return count + "x" + getMeanNanos() + "ns(max " + maxNanos + "ns)";
+		}
+	}
+}
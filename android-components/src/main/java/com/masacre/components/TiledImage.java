@@ -0,0 +1,329 @@
+package com.masacre.components;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.util.LruCache;
+
+import com.masacre.image.ImageSizing;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>
+ * A <code>TiledImage</code> is the handle of a picked image that is too large to be decoded at once. The image is
+ * split in square tiles that are decoded on demand with a {@link BitmapRegionDecoder}, at the sample size needed
+ * by the current zoom, so the full detail can be shown without ever holding the full image.
+ * </p>
+ *
+ * Every coordinate is given in the upright image: the rotation of the image is applied to each tile. The decoded
+ * tiles are kept in a bounded cache and must not be recycled by the caller. Close the handle when the image is
+ * not shown anymore.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see ImagePicker#getTiledImageFromResult(android.content.Context, int, android.content.Intent)
+ */
+public final class TiledImage implements Closeable {
+	/**
+	 * The default size of the side of a tile, in decoded pixels
+	 */
+	public static final int DEFAULT_TILE_SIZE = 512;
+
+	private static final int DEFAULT_CACHE_FRACTION = 8;
+	private static final int ROTATION_90 = 90;
+	private static final int ROTATION_180 = 180;
+	private static final int ROTATION_270 = 270;
+	private static final int KEY_SAMPLE_BITS = 8;
+	private static final int KEY_INDEX_BITS = 28;
+	private static final long KEY_INDEX_MASK = (1L << KEY_INDEX_BITS) - 1;
+
+	private final ImageSource source;
+	private final BitmapRegionDecoder decoder;
+	private final int rotation;
+	private final int tileSize;
+	private final Bitmap.Config config;
+	private final LruCache<Long, Bitmap> tiles;
+	private final Set<Long> loadingTiles = new HashSet<>();
+	private volatile boolean closed;
+
+	/* default */ TiledImage(@NonNull final ImageSource source, @NonNull final BitmapRegionDecoder decoder,
+			final int rotation, final int tileSize, @NonNull final Bitmap.Config config) {
+		this.source = source;
+		this.decoder = decoder;
+		this.rotation = rotation;
+		this.tileSize = tileSize;
+		this.config = config;
+		this.tiles = new TileCache((int) Math.min(Integer.MAX_VALUE,
+				Runtime.getRuntime().maxMemory() / DEFAULT_CACHE_FRACTION));
+	}
+
+	/**
+	 * Get the sample size that decodes the image with at least the given scale
+	 *
+	 * @param scale The ratio between the shown size and the size of the image
+	 * @return The largest power of two that is not greater than the inverse of the scale
+	 */
+	public static int calculateSampleSize(final float scale) {
+		return ImageSizing.calculateSampleSize(scale);
+	}
+
+	/**
+	 * @return The width of the upright image
+	 */
+	public int getWidth() {
+		return ImageSizing.getRotatedWidth(decoder.getWidth(), decoder.getHeight(), rotation);
+	}
+
+	/**
+	 * @return The height of the upright image
+	 */
+	public int getHeight() {
+		return ImageSizing.getRotatedHeight(decoder.getWidth(), decoder.getHeight(), rotation);
+	}
+
+	public int getRotation() {
+		return rotation;
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Get the bounds that a tile covers in the upright image, clipped to the image
+	 *
+	 * @param sampleSize The sample size of the tile
+	 * @param column The column of the tile
+	 * @param row The row of the tile
+	 * @return The bounds of the tile
+	 */
+	@NonNull
+	public Rect getTileBounds(final int sampleSize, final int column, final int row) {
+		final int side = tileSize * sampleSize;
+		return new Rect(column * side, row * side, Math.min(getWidth(), (column + 1) * side),
+				Math.min(getHeight(), (row + 1) * side));
+	}
+
+	/**
+	 * Get a tile only if it is already decoded. It can be called from the main thread.
+	 *
+	 * @param sampleSize The sample size of the tile
+	 * @param column The column of the tile
+	 * @param row The row of the tile
+	 * @return The decoded tile, or null
+	 */
+	@Nullable
+	public Bitmap getCachedTile(final int sampleSize, final int column, final int row) {
+		return tiles.get(createKey(sampleSize, column, row));
+	}
+
+	/**
+	 * Get a tile, decoding it if it is not in the cache. It must not be called from the main thread.
+	 *
+	 * @param sampleSize The sample size of the tile, a power of two
+	 * @param column The column of the tile
+	 * @param row The row of the tile
+	 * @return The decoded tile
+	 * @throws IOException if the tile cannot be decoded or the handle was closed
+	 */
+	@NonNull
+	public Bitmap getTile(final int sampleSize, final int column, final int row) throws IOException {
+		final Long key = createKey(sampleSize, column, row);
+		final Bitmap cachedTile = tiles.get(key);
+		if (cachedTile != null) {
+			return cachedTile;
+		}
+		final Bitmap tile = decodeTile(sampleSize, getTileBounds(sampleSize, column, row));
+		tiles.put(key, tile);
+		return tile;
+	}
+
+	/**
+	 * Deliver every tile that covers the viewport at the given scale. The cached tiles are delivered right away,
+	 * the missing ones are decoded in the image executor and delivered in the main thread.
+	 *
+	 * @param viewport The shown part of the upright image
+	 * @param scale The ratio between the shown size and the size of the image
+	 * @param listener The callback that will receive each tile
+	 */
+	public void loadTiles(@NonNull final Rect viewport, final float scale,
+			@NonNull final OnTileLoadedListener listener) {
+		final int sampleSize = calculateSampleSize(scale);
+		final int side = tileSize * sampleSize;
+		final int firstColumn = Math.max(0, viewport.left / side);
+		final int firstRow = Math.max(0, viewport.top / side);
+		final int lastColumn = Math.min((getWidth() - 1) / side, (viewport.right - 1) / side);
+		final int lastRow = Math.min((getHeight() - 1) / side, (viewport.bottom - 1) / side);
+		for (int row = firstRow; row <= lastRow; row++) {
+			for (int column = firstColumn; column <= lastColumn; column++) {
+				final Bitmap cachedTile = getCachedTile(sampleSize, column, row);
+				if (cachedTile != null) {
+					listener.onTileLoaded(sampleSize, column, row, cachedTile);
+				} else if (markLoading(createKey(sampleSize, column, row))) {
+					ImageExecutors.getExecutor().execute(new TileJob(sampleSize, column, row, listener));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Forget every decoded tile
+	 */
+	public void evictTiles() {
+		tiles.evictAll();
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	@Override
+	public void close() throws IOException {
+		synchronized (decoder) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			decoder.recycle();
+		}
+		tiles.evictAll();
+		source.close();
+	}
+
+	@NonNull
+	private Bitmap decodeTile(final int sampleSize, @NonNull final Rect bounds) throws IOException {
+		final BitmapFactory.Options options = new BitmapFactory.Options();
+		options.inSampleSize = sampleSize;
+		options.inPreferredConfig = config;
+		final Bitmap region;
+		// The decoder only decodes one region at a time
+		synchronized (decoder) {
+			if (closed) {
+				throw new IOException("The tiled image is closed");
+			}
+			region = decoder.decodeRegion(mapToSource(bounds), options);
+		}
+		if (region == null) {
+			throw new IOException("Cannot decode the tile " + bounds + " of " + source.getUri());
+		}
+		if (rotation == 0) {
+			return region;
+		}
+
+		final int width = region.getWidth();
+		final int height = region.getHeight();
+		final Bitmap tile = BitmapDecoder.transform(region, BitmapDecoder.createRotationMatrix(width, height, rotation),
+				ImageSizing.getRotatedWidth(width, height, rotation),
+				ImageSizing.getRotatedHeight(width, height, rotation), null);
+		region.recycle();
+		return tile;
+	}
+
+	/**
+	 * Map a rect of the upright image to the stored image, undoing the clockwise rotation
+	 */
+	@NonNull
+	private Rect mapToSource(@NonNull final Rect rect) {
+		final int width = decoder.getWidth();
+		final int height = decoder.getHeight();
+		switch (rotation) {
+		case ROTATION_90:
+			return new Rect(rect.top, height - rect.right, rect.bottom, height - rect.left);
+		case ROTATION_180:
+			return new Rect(width - rect.right, height - rect.bottom, width - rect.left, height - rect.top);
+		case ROTATION_270:
+			return new Rect(width - rect.bottom, rect.left, width - rect.top, rect.right);
+		default:
+			return new Rect(rect);
+		}
+	}
+
+	private synchronized boolean markLoading(final long key) {
+		return loadingTiles.add(key);
+	}
+
+	private synchronized void unmarkLoading(final long key) {
+		loadingTiles.remove(key);
+	}
+
+	private static long createKey(final int sampleSize, final int column, final int row) {
+		return (long) Integer.numberOfTrailingZeros(sampleSize) << (KEY_INDEX_BITS * 2)
+				| (column & KEY_INDEX_MASK) << KEY_INDEX_BITS | row & KEY_INDEX_MASK;
+	}
+
+	/**
+	 *
+	 * Interface definition for a callback to be invoked in the main thread when a tile is ready
+	 *
+	 */
+	public interface OnTileLoadedListener {
+		/**
+		 *
+		 * Called when a tile was decoded
+		 *
+		 * @param sampleSize The sample size of the tile
+		 * @param column The column of the tile
+		 * @param row The row of the tile
+		 * @param tile The decoded tile, drawn at {@link #getTileBounds(int, int, int)}
+		 */
+		void onTileLoaded(final int sampleSize, final int column, final int row, @NonNull final Bitmap tile);
+	}
+
+	/**
+	 * The evicted tiles are not recycled, since they may still be drawn
+	 */
+	private static final class TileCache extends LruCache<Long, Bitmap> {
+		/* default */ TileCache(final int maxBytes) {
+			super(maxBytes);
+		}
+
+		@Override
+		protected int sizeOf(final Long key, final Bitmap value) {
+			return value.getByteCount();
+		}
+	}
+
+	private final class TileJob implements Runnable {
+		private final int sampleSize;
+		private final int column;
+		private final int row;
+		private final OnTileLoadedListener listener;
+
+		/* default */ TileJob(final int sampleSize, final int column, final int row,
+				@NonNull final OnTileLoadedListener listener) {
+			this.sampleSize = sampleSize;
+			this.column = column;
+			this.row = row;
+			this.listener = listener;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if (closed) {
+					return;
+				}
+				final Bitmap tile = getTile(sampleSize, column, row);
+				ImageExecutors.postToMainThread(new Runnable() {
+					@Override
+					public void run() {
+						if (!closed) {
+							listener.onTileLoaded(sampleSize, column, row, tile);
+						}
+					}
+				});
+			} catch (final IOException e) {
+				// The tile is requested again with the next viewport
+			} finally {
+				unmarkLoading(createKey(sampleSize, column, row));
+			}
+		}
+	}
+}
@@ -3,18 +3,34 @@ package com.masacre.model;
 import android.graphics.Bitmap;
 import android.net.Uri;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  *
  * A <code>BitmapImage</code> is a model that encapsulate a {@link Bitmap}
  * and his corresponding {@link Uri} path
  *
+ * The bitmap may be stored without its rotation applied, in that case {@link #getRotation()} returns
+ * the clockwise degrees that must be applied when it is drawn.
+ *
+ * The image is reference counted. It is created with one reference, each {@link #acquire()} adds one
+ * and each {@link #release()} removes one. When the last reference is released the bitmap is given
+ * to the {@link Recycler}, if any, so it must not be used anymore.
+ *
  * @author Martin Purita - martinpurita@gmail.com
  *
  */
 public class BitmapImage {
+	private static final int RIGHT_ANGLE = 90;
+	private static final int FULL_ANGLE = 360;
+
 	private final Bitmap bitmap;
 	private final Uri uri;
+	private final int rotation;
+	private final Recycler recycler;
+	private final AtomicInteger references = new AtomicInteger(1);
 
 	/**
 	 * Create a bitmap image with his uri path
@@ -23,8 +39,78 @@ public class BitmapImage {
 	 * @param uri the path of the image
 	 */
 	public BitmapImage(@NonNull final Bitmap bitmap, @NonNull final Uri uri) {
+		this(bitmap, uri, null);
+	}
+
+	/**
+	 * Create a bitmap image with his uri path, whose bitmap is given to the recycler when it is released
+	 *
+	 * @param bitmap the image data
+	 * @param uri the path of the image
+	 * @param recycler the recycler that receives the bitmap, or null to leave it to the garbage collector
+	 */
+	public BitmapImage(@NonNull final Bitmap bitmap, @NonNull final Uri uri, @Nullable final Recycler recycler) {
+		this(bitmap, uri, 0, recycler);
+	}
+
+	/**
+	 * Create a bitmap image with his uri path, whose rotation is applied when it is drawn
+	 *
+	 * @param bitmap the image data
+	 * @param uri the path of the image
+	 * @param rotation the clockwise degrees that must be applied to the bitmap, a multiple of 90
+	 * @param recycler the recycler that receives the bitmap, or null to leave it to the garbage collector
+	 */
+	public BitmapImage(@NonNull final Bitmap bitmap, @NonNull final Uri uri, final int rotation,
+			@Nullable final Recycler recycler) {
+		if (rotation % RIGHT_ANGLE != 0) {
+			throw new IllegalArgumentException("The rotation must be a multiple of 90 degrees");
+		}
 		this.bitmap = bitmap;
 		this.uri = uri;
+		this.rotation = (rotation % FULL_ANGLE + FULL_ANGLE) % FULL_ANGLE;
+		this.recycler = recycler;
+	}
+
+	/**
+	 * Add a reference to the image, that must be balanced with a call to {@link #release()}
+	 *
+	 * @return This image
+	 * @throws IllegalStateException if the image was already released
+	 */
+	@NonNull
+	public BitmapImage acquire() {
+		int count;
+		do {
+			count = references.get();
+			if (count <= 0) {
+				throw new IllegalStateException("The image was already released");
+			}
+		} while (!references.compareAndSet(count, count + 1));
+		return this;
+	}
+
+	/**
+	 * Remove a reference to the image. When the last one is removed the bitmap is given to the recycler.
+	 *
+	 * @throws IllegalStateException if the image was already released
+	 */
+	public void release() {
+		final int count = references.decrementAndGet();
+		if (count < 0) {
+			references.incrementAndGet();
+			throw new IllegalStateException("The image was already released");
+		}
+		if (count == 0 && recycler != null) {
+			recycler.recycle(bitmap);
+		}
+	}
+
+	/**
+	 * @return true if every reference of the image was released
+	 */
+	public boolean isReleased() {
+		return references.get() <= 0;
 	}
 
 	@NonNull
@@ -36,4 +122,44 @@ public class BitmapImage {
 	public Uri getUri() {
 		return uri;
 	}
+
+	/**
+	 * @return The clockwise degrees that must be applied to the bitmap when it is drawn: 0, 90, 180 or 270
+	 */
+	public int getRotation() {
+		return rotation;
+	}
+
+	/**
+	 * @return The width of the image once its rotation is applied
+	 */
+	public int getWidth() {
+		return isAxisSwapped() ? bitmap.getHeight() : bitmap.getWidth();
+	}
+
+	/**
+	 * @return The height of the image once its rotation is applied
+	 */
+	public int getHeight() {
+		return isAxisSwapped() ? bitmap.getWidth() : bitmap.getHeight();
+	}
+
+	private boolean isAxisSwapped() {
+		return rotation % (2 * RIGHT_ANGLE) != 0;
+	}
+
+	/**
+	 *
+	 * Interface definition for the owner of the bitmaps that are no longer referenced
+	 *
+	 */
+	public interface Recycler {
+		/**
+		 *
+		 * Called when the last reference of an image was released
+		 *
+		 * @param bitmap The bitmap that is no longer used
+		 */
+		void recycle(@NonNull final Bitmap bitmap);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,223 @@
+package com.masacre.model;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+/**
+ *
+ * A <code>ImageRequest</code> describes how a picked image must be decoded: the size that
+ * the result should have, how that size is reached and the {@link Bitmap.Config} of the pixels.
+ *
+ * A target dimension equal to {@link #SIZE_UNSPECIFIED} does not constrain the decoded image.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see Builder
+ */
+public final class ImageRequest {
+	/**
+	 * Value used when the target width or height must not constrain the decoded image
+	 */
+	public static final int SIZE_UNSPECIFIED = 0;
+	private static final int DEFAULT_MIN_WIDTH_QUALITY = 400;
+
+	private final int targetWidth;
+	private final int targetHeight;
+	private final ScaleMode scaleMode;
+	private final Bitmap.Config config;
+	private final boolean deferRotation;
+
+	private ImageRequest(@NonNull final Builder builder) {
+		this.targetWidth = builder.targetWidth;
+		this.targetHeight = builder.targetHeight;
+		this.scaleMode = builder.scaleMode;
+		this.config = builder.config;
+		this.deferRotation = builder.deferRotation;
+	}
+
+	/**
+	 * Create the request used when none is given: the image is only sampled down while its
+	 * width stays over 400 pixels
+	 *
+	 * @return The default image request
+	 */
+	@NonNull
+	public static ImageRequest createDefault() {
+		return new Builder().build();
+	}
+
+	/**
+	 * Create a builder that starts with the values of this request
+	 *
+	 * @return A new builder
+	 */
+	@NonNull
+	public Builder buildUpon() {
+		return new Builder(this);
+	}
+
+	public int getTargetWidth() {
+		return targetWidth;
+	}
+
+	public int getTargetHeight() {
+		return targetHeight;
+	}
+
+	@NonNull
+	public ScaleMode getScaleMode() {
+		return scaleMode;
+	}
+
+	@NonNull
+	public Bitmap.Config getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return true if the rotation is carried by the {@link BitmapImage} instead of applied to its pixels
+	 */
+	public boolean isDeferRotation() {
+		return deferRotation;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ImageRequest)) {
+			return false;
+		}
+		final ImageRequest that = (ImageRequest) o;
+		return targetWidth == that.targetWidth && targetHeight == that.targetHeight
+				&& scaleMode == that.scaleMode && config == that.config && deferRotation == that.deferRotation;
+	}
+
+	@Override
+	public int hashCode() {
+		int result = targetWidth;
+		result = 31 * result + targetHeight;
+		result = 31 * result + scaleMode.hashCode();
+		result = 31 * result + config.hashCode();
+		result = 31 * result + (deferRotation ? 1 : 0);
+		return result;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageRequest{" + targetWidth + "x" + targetHeight + ", " + scaleMode + ", " + config
+				+ (deferRotation ? ", deferRotation" : "") + "}";
+	}
+
+	/**
+	 * The way the decoded image reaches the target size
+	 */
+	public enum ScaleMode {
+		/**
+		 * The image is only sampled down by a power of two, so it stays equal or bigger than the target
+		 */
+		SAMPLE_ONLY,
+		/**
+		 * The image is sampled and then scaled to fit inside the target, keeping the aspect ratio
+		 */
+		FIT,
+		/**
+		 * The image is sampled, scaled to cover the target and then center cropped to the exact target size
+		 */
+		CROP
+	}
+
+	/**
+	 * Builder used to create an {@link ImageRequest}
+	 */
+	public static final class Builder {
+		private int targetWidth = DEFAULT_MIN_WIDTH_QUALITY;
+		private int targetHeight = SIZE_UNSPECIFIED;
+		private ScaleMode scaleMode = ScaleMode.SAMPLE_ONLY;
+		private Bitmap.Config config = Bitmap.Config.ARGB_8888;
+		private boolean deferRotation;
+
+		public Builder() {
+			// The default values are set in the fields
+		}
+
+		private Builder(@NonNull final ImageRequest request) {
+			this.targetWidth = request.targetWidth;
+			this.targetHeight = request.targetHeight;
+			this.scaleMode = request.scaleMode;
+			this.config = request.config;
+			this.deferRotation = request.deferRotation;
+		}
+
+		/**
+		 * Set the size that the decoded image should have
+		 *
+		 * @param targetWidth The width in pixels or {@link #SIZE_UNSPECIFIED}
+		 * @param targetHeight The height in pixels or {@link #SIZE_UNSPECIFIED}
+		 * @return This builder
+		 */
+		@NonNull
+		public Builder setTargetSize(final int targetWidth, final int targetHeight) {
+			if (targetWidth < 0 || targetHeight < 0) {
+				throw new IllegalArgumentException("The target size cannot be negative");
+			}
+			this.targetWidth = targetWidth;
+			this.targetHeight = targetHeight;
+			return this;
+		}
+
+		/**
+		 * Set the way the decoded image reaches the target size
+		 *
+		 * @param scaleMode The scale mode
+		 * @return This builder
+		 */
+		@NonNull
+		public Builder setScaleMode(@NonNull final ScaleMode scaleMode) {
+			this.scaleMode = scaleMode;
+			return this;
+		}
+
+		/**
+		 * Set the preferred pixel configuration of the decoded image
+		 *
+		 * @param config The bitmap config
+		 * @return This builder
+		 */
+		@NonNull
+		public Builder setConfig(@NonNull final Bitmap.Config config) {
+			this.config = config;
+			return this;
+		}
+
+		/**
+		 * Set whether the rotation of the image is applied to its pixels or only carried by the
+		 * {@link BitmapImage}. A deferred rotation avoids a second full size bitmap, and must be applied
+		 * when the image is drawn, for example with {@link com.masacre.components.OrientedBitmapDrawable}.
+		 *
+		 * @param deferRotation true to carry the rotation instead of applying it
+		 * @return This builder
+		 *
+		 * @see BitmapImage#getRotation()
+		 */
+		@NonNull
+		public Builder setDeferRotation(final boolean deferRotation) {
+			this.deferRotation = deferRotation;
+			return this;
+		}
+
+		/**
+		 * Create the image request
+		 *
+		 * @return The image request
+		 */
+		@NonNull
+		public ImageRequest build() {
+			if (scaleMode == ScaleMode.CROP && (targetWidth == SIZE_UNSPECIFIED || targetHeight == SIZE_UNSPECIFIED)) {
+				throw new IllegalStateException("The crop scale mode needs both target dimensions");
+			}
+			return new ImageRequest(this);
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package com.masacre.model;
+
+import android.graphics.Bitmap;
+import android.support.annotation.NonNull;
+
+/**
+ *
+ * A <code>ImageSaveOptions</code> describes how an image is encoded when it is saved to disk:
+ * the {@link Bitmap.CompressFormat} and the quality of the lossy formats.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ * @see Builder
+ */
+public final class ImageSaveOptions {
+	/**
+	 * The highest quality, which is also the one ignored by the lossless PNG format
+	 */
+	public static final int MAX_QUALITY = 100;
+	private static final int DEFAULT_QUALITY = 90;
+
+	private final Bitmap.CompressFormat format;
+	private final int quality;
+
+	private ImageSaveOptions(@NonNull final Builder builder) {
+		this.format = builder.format;
+		this.quality = builder.quality;
+	}
+
+	/**
+	 * Create the options used when none are given: JPEG at quality 90, which is much smaller and faster
+	 * to encode than PNG for photos
+	 *
+	 * @return The default save options
+	 */
+	@NonNull
+	public static ImageSaveOptions createDefault() {
+		return new Builder().build();
+	}
+
+	@NonNull
+	public Bitmap.CompressFormat getFormat() {
+		return format;
+	}
+
+	public int getQuality() {
+		return quality;
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof ImageSaveOptions)) {
+			return false;
+		}
+		final ImageSaveOptions that = (ImageSaveOptions) o;
+		return format == that.format && quality == that.quality;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * format.hashCode() + quality;
+	}
+
+	@Override
+	public String toString() {
+		return "ImageSaveOptions{" + format + ", quality=" + quality + "}";
+	}
+
+	/**
+	 * Builder used to create an {@link ImageSaveOptions}
+	 */
+	public static final class Builder {
+		private Bitmap.CompressFormat format = Bitmap.CompressFormat.JPEG;
+		private int quality = DEFAULT_QUALITY;
+
+		/**
+		 * Set the format of the saved image
+		 *
+		 * @param format The compress format
+		 * @return This builder
+		 */
+		@NonNull
+		public Builder setFormat(@NonNull final Bitmap.CompressFormat format) {
+			this.format = format;
+			return this;
+		}
+
+		/**
+		 * Set the quality of the saved image, ignored by the lossless formats
+		 *
+		 * @param quality The quality, between 0 and {@link #MAX_QUALITY}
+		 * @return This builder
+		 */
+		@NonNull
+		public Builder setQuality(final int quality) {
+			if (quality < 0 || quality > MAX_QUALITY) {
+				throw new IllegalArgumentException("The quality must be between 0 and " + MAX_QUALITY);
+			}
+			this.quality = quality;
+			return this;
+		}
+
+		/**
+		 * Create the save options
+		 *
+		 * @return The save options
+		 */
+		@NonNull
+		public ImageSaveOptions build() {
+			return new ImageSaveOptions(this);
+		}
+	}
+}
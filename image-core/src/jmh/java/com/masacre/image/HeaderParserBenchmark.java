@@ -0,0 +1,81 @@
+package com.masacre.image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>HeaderParserBenchmark</code> measures the throughput of the {@link ImageHeaderParser}: a JPEG with
+ * an EXIF orientation and, optionally, large application segments before the frame, a PNG and the EXIF
+ * segment alone.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeaderParserBenchmark {
+	private static final int WIDTH = 4032;
+	private static final int HEIGHT = 3024;
+	private static final int ORIENTATION_ROTATE_90 = 6;
+	private static final int BUFFER_SIZE = 8 * 1024;
+
+	/**
+	 * The bytes between the EXIF segment and the start of frame, as the thumbnails and maker notes of a camera
+	 */
+	@Param({"0", "16384"})
+	public int paddingBytes;
+
+	private byte[] jpeg;
+	private byte[] png;
+	private byte[] exif;
+
+	@Setup
+	public void setUp() {
+		jpeg = SyntheticImages.createJpeg(WIDTH, HEIGHT, ORIENTATION_ROTATE_90, paddingBytes);
+		png = SyntheticImages.createPng(WIDTH, HEIGHT);
+		exif = SyntheticImages.createExif(ORIENTATION_ROTATE_90);
+	}
+
+	@Benchmark
+	public ImageHeader parseJpeg() throws IOException {
+		return ImageHeaderParser.parse(new ByteArrayInputStream(jpeg));
+	}
+
+	/**
+	 * Parse through the same buffer that the image source uses
+	 */
+	@Benchmark
+	public ImageHeader parseJpegBuffered() throws IOException {
+		return ImageHeaderParser.parse(new BufferedInputStream(new ByteArrayInputStream(jpeg), BUFFER_SIZE));
+	}
+
+	@Benchmark
+	public ImageHeader parsePng() throws IOException {
+		return ImageHeaderParser.parse(new ByteArrayInputStream(png));
+	}
+
+	@Benchmark
+	public int parseExif() {
+		return ImageHeaderParser.parseExif(exif);
+	}
+}
@@ -0,0 +1,109 @@
+package com.masacre.image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>ImageSizingBenchmark</code> measures the size math of the decode pipeline over a fixed set of
+ * image and target sizes: the sample size selection, the scale, the tile sample size and the EXIF orientation
+ * mapping.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImageSizingBenchmark {
+	private static final int CASES = 1024;
+	private static final long SEED = 42L;
+	private static final int MIN_SOURCE_SIDE = 256;
+	private static final int MAX_SOURCE_SIDE = 8192;
+	private static final int MIN_TARGET_SIDE = 64;
+	private static final int MAX_TARGET_SIDE = 2048;
+	private static final int MAX_ORIENTATION = 8;
+
+	private final int[] sourceWidths = new int[CASES];
+	private final int[] sourceHeights = new int[CASES];
+	private final int[] targetWidths = new int[CASES];
+	private final int[] targetHeights = new int[CASES];
+	private final float[] scales = new float[CASES];
+	private final int[] orientations = new int[CASES];
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(SEED);
+		for (int i = 0; i < CASES; i++) {
+			sourceWidths[i] = MIN_SOURCE_SIDE + random.nextInt(MAX_SOURCE_SIDE - MIN_SOURCE_SIDE);
+			sourceHeights[i] = MIN_SOURCE_SIDE + random.nextInt(MAX_SOURCE_SIDE - MIN_SOURCE_SIDE);
+			// Some targets leave one side unconstrained
+			targetWidths[i] = i % 4 == 0 ? 0 : MIN_TARGET_SIDE + random.nextInt(MAX_TARGET_SIDE - MIN_TARGET_SIDE);
+			targetHeights[i] = MIN_TARGET_SIDE + random.nextInt(MAX_TARGET_SIDE - MIN_TARGET_SIDE);
+			scales[i] = random.nextFloat();
+			orientations[i] = 1 + random.nextInt(MAX_ORIENTATION);
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CASES)
+	public void calculateSampleSizeFit(final Blackhole blackhole) {
+		for (int i = 0; i < CASES; i++) {
+			blackhole.consume(ImageSizing.calculateSampleSize(sourceWidths[i], sourceHeights[i], targetWidths[i],
+					targetHeights[i], false));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CASES)
+	public void calculateSampleSizeCover(final Blackhole blackhole) {
+		for (int i = 0; i < CASES; i++) {
+			blackhole.consume(ImageSizing.calculateSampleSize(sourceWidths[i], sourceHeights[i], targetWidths[i],
+					targetHeights[i], true));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CASES)
+	public void calculateScale(final Blackhole blackhole) {
+		for (int i = 0; i < CASES; i++) {
+			blackhole.consume(ImageSizing.calculateScale(sourceWidths[i], sourceHeights[i], targetWidths[i],
+					targetHeights[i], true));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CASES)
+	public void calculateTileSampleSize(final Blackhole blackhole) {
+		for (int i = 0; i < CASES; i++) {
+			blackhole.consume(ImageSizing.calculateSampleSize(scales[i]));
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(CASES)
+	public void getRotatedSize(final Blackhole blackhole) {
+		for (int i = 0; i < CASES; i++) {
+			final int rotation = ImageHeader.getRotation(orientations[i]);
+			blackhole.consume(ImageSizing.getRotatedWidth(sourceWidths[i], sourceHeights[i], rotation));
+			blackhole.consume(ImageSizing.getRotatedHeight(sourceWidths[i], sourceHeights[i], rotation));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+package com.masacre.image;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>
+ * The <code>PoolBenchmark</code> measures the bookkeeping of the reusable bitmaps and of the decode memory:
+ * the exact and best fit polls of a {@link BucketPool}, the eviction of its least recently used bucket and the
+ * reservations of a {@link DecodeBudget}, alone and shared by several threads.
+ * </p>
+ *
+ * The pooled values are byte arrays of the size of a bitmap, so the sizes and the eviction order match the
+ * bitmap pool.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+	private static final int BUCKET_SIZE_STEP = 1024;
+	private static final int VALUES_PER_BUCKET = 4;
+	private static final int MAX_SIZE_MULTIPLE = 2;
+	private static final int CONTENDED_THREADS = 4;
+	private static final long BUDGET_BYTES = 64L * 1024 * 1024;
+	private static final long DECODE_BYTES = 4L * 1024 * 1024;
+
+	/**
+	 * The number of buckets, that is the number of distinct bitmap sizes in the pool
+	 */
+	@Param({"8", "64"})
+	public int buckets;
+
+	private BucketPool<Integer, byte[]> pool;
+	private BucketPool<Integer, byte[]> fullPool;
+	private byte[][] values;
+	private long fullPoolSize;
+	private int nextBucket;
+	private DecodeBudget budget;
+
+	@Setup
+	public void setUp() {
+		pool = new ArrayPool();
+		fullPool = new ArrayPool();
+		values = new byte[buckets][];
+		for (int i = 0; i < buckets; i++) {
+			values[i] = new byte[(i + 1) * BUCKET_SIZE_STEP];
+			for (int j = 0; j < VALUES_PER_BUCKET; j++) {
+				pool.offer(values[i].length, values[i]);
+				fullPool.offer(values[i].length, values[i]);
+			}
+		}
+		fullPoolSize = fullPool.getSize();
+		budget = new DecodeBudget(BUDGET_BYTES);
+	}
+
+	/**
+	 * Take and give back a value of a known size, the path of the pre KitKat pool
+	 */
+	@Benchmark
+	public byte[] pollExact() {
+		final byte[] value = values[nextBucket()];
+		final byte[] polled = pool.poll(value.length);
+		pool.offer(value.length, polled);
+		return polled;
+	}
+
+	/**
+	 * Take and give back the smallest value that holds a size, the path of a decode into a pooled bitmap
+	 */
+	@Benchmark
+	public byte[] pollLarger() {
+		final int size = values[nextBucket()].length - 1;
+		final byte[] polled = pool.pollLarger(size, MAX_SIZE_MULTIPLE);
+		pool.offer(polled.length, polled);
+		return polled;
+	}
+
+	/**
+	 * Give a value to a full pool, which evicts from the least recently used bucket
+	 */
+	@Benchmark
+	public long offerAndEvict() {
+		final byte[] value = values[nextBucket()];
+		fullPool.offer(value.length, value);
+		fullPool.trimToSize(fullPoolSize);
+		return fullPool.getEvictionCount();
+	}
+
+	@Benchmark
+	public int reserveDecode() {
+		final int reservation = budget.acquire(DECODE_BYTES);
+		budget.release(reservation);
+		return reservation;
+	}
+
+	@Benchmark
+	@Threads(CONTENDED_THREADS)
+	public int reserveDecodeContended() {
+		final int reservation = budget.acquire(DECODE_BYTES);
+		budget.release(reservation);
+		return reservation;
+	}
+
+	private int nextBucket() {
+		nextBucket = nextBucket + 1 == buckets ? 0 : nextBucket + 1;
+		return nextBucket;
+	}
+
+	private static final class ArrayPool extends BucketPool<Integer, byte[]> {
+		@Override
+		protected int sizeOf(final byte[] value) {
+			return value.length;
+		}
+	}
+}
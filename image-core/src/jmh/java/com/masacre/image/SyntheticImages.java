@@ -0,0 +1,147 @@
+package com.masacre.image;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * <p>
+ * The <code>SyntheticImages</code> class builds the first bytes of JPEG and PNG images, with the segments that
+ * the {@link ImageHeaderParser} reads, so the benchmarks do not depend on image files.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+/* default */ final class SyntheticImages {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final int MARKER_SOI = 0xFFD8;
+	private static final int MARKER_APP1 = 0xFFE1;
+	private static final int MARKER_APP2 = 0xFFE2;
+	private static final int MARKER_SOF0 = 0xFFC0;
+	private static final int MARKER_SOS = 0xFFDA;
+	private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+	private static final int SEGMENT_LENGTH_SIZE = 2;
+	private static final byte[] EXIF_IDENTIFIER = {'E', 'x', 'i', 'f', 0, 0};
+	private static final int TIFF_BIG_ENDIAN = 0x4D4D;
+	private static final int TIFF_MAGIC = 42;
+	private static final int TIFF_HEADER_SIZE = 8;
+	private static final int TAG_ORIENTATION = 0x0112;
+	private static final int TYPE_SHORT = 3;
+	private static final int PRECISION = 8;
+	private static final int COMPONENTS = 3;
+	private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+	private static final int PNG_IHDR_LENGTH = 13;
+	private static final int PNG_IHDR = 0x49484452;
+	private static final int PNG_BIT_DEPTH = 8;
+	private static final int PNG_COLOR_TYPE_RGBA = 6;
+
+	private SyntheticImages() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Build a JPEG header: the EXIF segment, application segments of the given size as cameras write before
+	 * the frame, and the start of frame
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @param orientation The EXIF orientation
+	 * @param paddingBytes The bytes of the segments between the EXIF segment and the start of frame
+	 * @return The bytes of the header
+	 */
+	/* default */ static byte[] createJpeg(final int width, final int height, final int orientation,
+			final int paddingBytes) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream output = new DataOutputStream(bytes);
+			output.writeShort(MARKER_SOI);
+			writeExif(output, orientation);
+
+			int remaining = paddingBytes;
+			while (remaining > 0) {
+				final int length = Math.min(remaining, MAX_SEGMENT_LENGTH - SEGMENT_LENGTH_SIZE);
+				output.writeShort(MARKER_APP2);
+				output.writeShort(length + SEGMENT_LENGTH_SIZE);
+				output.write(new byte[length]);
+				remaining -= length;
+			}
+
+			output.writeShort(MARKER_SOF0);
+			output.writeShort(SEGMENT_LENGTH_SIZE + 1 + 2 + 2 + 1 + COMPONENTS * COMPONENTS);
+			output.writeByte(PRECISION);
+			output.writeShort(height);
+			output.writeShort(width);
+			output.writeByte(COMPONENTS);
+			output.write(new byte[COMPONENTS * COMPONENTS]);
+			output.writeShort(MARKER_SOS);
+			output.flush();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Build the content of an APP1 segment with a single orientation entry
+	 *
+	 * @param orientation The EXIF orientation
+	 * @return The bytes of the segment, without its marker and length
+	 */
+	/* default */ static byte[] createExif(final int orientation) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream output = new DataOutputStream(bytes);
+			output.write(EXIF_IDENTIFIER);
+			output.writeShort(TIFF_BIG_ENDIAN);
+			output.writeShort(TIFF_MAGIC);
+			output.writeInt(TIFF_HEADER_SIZE);
+			output.writeShort(1);
+			output.writeShort(TAG_ORIENTATION);
+			output.writeShort(TYPE_SHORT);
+			output.writeInt(1);
+			output.writeShort(orientation);
+			output.writeShort(0);
+			// No next image file directory
+			output.writeInt(0);
+			output.flush();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Build a PNG header: the signature and the header chunk
+	 *
+	 * @param width The width of the image
+	 * @param height The height of the image
+	 * @return The bytes of the header
+	 */
+	/* default */ static byte[] createPng(final int width, final int height) {
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream output = new DataOutputStream(bytes);
+			output.write(PNG_SIGNATURE);
+			output.writeInt(PNG_IHDR_LENGTH);
+			output.writeInt(PNG_IHDR);
+			output.writeInt(width);
+			output.writeInt(height);
+			output.writeByte(PNG_BIT_DEPTH);
+			output.writeByte(PNG_COLOR_TYPE_RGBA);
+			// Compression, filter, interlace and the checksum
+			output.write(new byte[1 + 1 + 1 + 4]);
+			output.flush();
+			return bytes.toByteArray();
+		} catch (final IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void writeExif(final DataOutputStream output, final int orientation) throws IOException {
+		final byte[] exif = createExif(orientation);
+		output.writeShort(MARKER_APP1);
+		output.writeShort(exif.length + SEGMENT_LENGTH_SIZE);
+		output.write(exif);
+	}
+}
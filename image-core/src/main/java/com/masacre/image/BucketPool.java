@@ -0,0 +1,140 @@
+package com.masacre.image;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * A <code>BucketPool</code> holds the bookkeeping of a pool of reusable values: the values are grouped in
+ * buckets by key, the buckets are kept in least recently used order and the size of the held values is
+ * accounted, so the pool can be trimmed to a budget.
+ * </p>
+ *
+ * The pool is not thread safe, the owner synchronizes the calls. Every value of a bucket must have the same size.
+ *
+ * @param <K> The type of the keys of the buckets
+ * @param <V> The type of the pooled values
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public abstract class BucketPool<K, V> {
+	private final LinkedHashMap<K, ArrayDeque<V>> buckets = new LinkedHashMap<>(0, 0.75f, true);
+	private long size;
+	private long evictionCount;
+
+	/**
+	 * @param value A pooled value
+	 * @return The size of the value, for example its bytes
+	 */
+	protected abstract int sizeOf(V value);
+
+	/**
+	 * Called for each value removed by {@link #trimToSize(long)}. The default implementation does nothing.
+	 *
+	 * @param value The evicted value
+	 */
+	protected void onEvicted(final V value) {
+		// Nothing to release by default
+	}
+
+	/**
+	 * Add a value to the bucket of the given key
+	 *
+	 * @param key The key of the bucket
+	 * @param value The value that can be reused
+	 */
+	public void offer(final K key, final V value) {
+		ArrayDeque<V> bucket = buckets.get(key);
+		if (bucket == null) {
+			bucket = new ArrayDeque<>();
+			buckets.put(key, bucket);
+		}
+		bucket.push(value);
+		size += sizeOf(value);
+	}
+
+	/**
+	 * Remove the most recently added value of a bucket
+	 *
+	 * @param key The key of the bucket
+	 * @return The value, or null if the bucket is empty
+	 */
+	public V poll(final K key) {
+		final ArrayDeque<V> bucket = buckets.get(key);
+		if (bucket == null) {
+			return null;
+		}
+		final V value = bucket.pop();
+		if (bucket.isEmpty()) {
+			buckets.remove(key);
+		}
+		size -= sizeOf(value);
+		return value;
+	}
+
+	/**
+	 * Remove a value of the smallest bucket that can hold the given size without wasting too much of it
+	 *
+	 * @param minSize The size that the value must hold
+	 * @param maxMultiple The maximum ratio between the size of the value and the given size
+	 * @return The value, or null if no bucket is in the range
+	 */
+	public V pollLarger(final int minSize, final int maxMultiple) {
+		final long maxSize = (long) minSize * maxMultiple;
+		K bestKey = null;
+		int bestSize = Integer.MAX_VALUE;
+		for (final Map.Entry<K, ArrayDeque<V>> entry : buckets.entrySet()) {
+			final int candidateSize = sizeOf(entry.getValue().peek());
+			if (candidateSize >= minSize && candidateSize <= maxSize && candidateSize < bestSize) {
+				bestKey = entry.getKey();
+				bestSize = candidateSize;
+			}
+		}
+		return bestKey == null ? null : poll(bestKey);
+	}
+
+	/**
+	 * Evict the values of the least recently used buckets until the pool is under the given size
+	 *
+	 * @param maxSize The maximum size that the pool can keep
+	 */
+	public void trimToSize(final long maxSize) {
+		final Iterator<Map.Entry<K, ArrayDeque<V>>> iterator = buckets.entrySet().iterator();
+		while (size > maxSize && iterator.hasNext()) {
+			final ArrayDeque<V> bucket = iterator.next().getValue();
+			while (size > maxSize && !bucket.isEmpty()) {
+				final V value = bucket.removeLast();
+				size -= sizeOf(value);
+				evictionCount++;
+				onEvicted(value);
+			}
+			if (bucket.isEmpty()) {
+				iterator.remove();
+			}
+		}
+	}
+
+	/**
+	 * @return The size of the pooled values
+	 */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * @return The number of values evicted by {@link #trimToSize(long)}
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * @return The number of buckets that hold at least one value
+	 */
+	public int getBucketCount() {
+		return buckets.size();
+	}
+}
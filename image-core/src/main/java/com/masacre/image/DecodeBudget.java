@@ -0,0 +1,62 @@
+package com.masacre.image;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * <p>
+ * A <code>DecodeBudget</code> bounds the memory held by the decodes that run at the same time. Each decode
+ * reserves its estimated bytes before it starts and gives them back when it ends, waiting while the budget is
+ * spent, so many parallel decodes of large images run in turns instead of running out of memory.
+ * </p>
+ *
+ * A decode bigger than the whole budget reserves all of it, so it runs alone instead of never running.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public final class DecodeBudget {
+	private static final int BYTES_PER_PERMIT = 1024;
+
+	private final int permits;
+	private final Semaphore semaphore;
+
+	/**
+	 * Create a budget of the given size
+	 *
+	 * @param maxBytes The maximum amount of bytes that the running decodes can hold
+	 */
+	public DecodeBudget(final long maxBytes) {
+		this.permits = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / BYTES_PER_PERMIT));
+		// Fair, so a large decode is not starved by the small ones that keep arriving
+		this.semaphore = new Semaphore(permits, true);
+	}
+
+	/**
+	 * Reserve the given bytes, waiting until they are available
+	 *
+	 * @param bytes The estimated bytes of the decode
+	 * @return The reservation, that must be given to {@link #release(int)}
+	 */
+	public int acquire(final long bytes) {
+		final int reservation = (int) Math.max(1, Math.min(permits, (bytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT));
+		semaphore.acquireUninterruptibly(reservation);
+		return reservation;
+	}
+
+	/**
+	 * Give back a reservation
+	 *
+	 * @param reservation The value returned by {@link #acquire(long)}
+	 */
+	public void release(final int reservation) {
+		semaphore.release(reservation);
+	}
+
+	public long getMaxBytes() {
+		return (long) permits * BYTES_PER_PERMIT;
+	}
+
+	public long getAvailableBytes() {
+		return (long) semaphore.availablePermits() * BYTES_PER_PERMIT;
+	}
+}
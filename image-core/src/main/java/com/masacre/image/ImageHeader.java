@@ -0,0 +1,117 @@
+package com.masacre.image;
+
+/**
+ * <p>
+ * A <code>ImageHeader</code> holds what the {@link ImageHeaderParser} read from the first bytes of an
+ * image: its format, its stored size and its EXIF orientation. Each value may be unknown.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public final class ImageHeader {
+	/**
+	 * Value of the size when the header does not contain it
+	 */
+	public static final int SIZE_UNKNOWN = -1;
+	/**
+	 * Value of the orientation when the header does not contain it
+	 */
+	public static final int ORIENTATION_UNDEFINED = 0;
+	public static final int FORMAT_UNKNOWN = 0;
+	public static final int FORMAT_JPEG = 1;
+	public static final int FORMAT_PNG = 2;
+	public static final ImageHeader UNKNOWN = new ImageHeader(FORMAT_UNKNOWN, SIZE_UNKNOWN, SIZE_UNKNOWN,
+			ORIENTATION_UNDEFINED);
+
+	private static final int ORIENTATION_FLIP_HORIZONTAL = 2;
+	private static final int ORIENTATION_ROTATE_180 = 3;
+	private static final int ORIENTATION_FLIP_VERTICAL = 4;
+	private static final int ORIENTATION_TRANSPOSE = 5;
+	private static final int ORIENTATION_ROTATE_90 = 6;
+	private static final int ORIENTATION_TRANSVERSE = 7;
+	private static final int ORIENTATION_ROTATE_270 = 8;
+	private static final int ROTATION_0 = 0;
+	private static final int ROTATION_90 = 90;
+	private static final int ROTATION_180 = 180;
+	private static final int ROTATION_270 = 270;
+
+	private final int format;
+	private final int width;
+	private final int height;
+	private final int orientation;
+
+	public ImageHeader(final int format, final int width, final int height, final int orientation) {
+		this.format = format;
+		this.width = width;
+		this.height = height;
+		this.orientation = orientation;
+	}
+
+	/**
+	 * Map an EXIF orientation to the clockwise degrees that must be applied to show the image upright.
+	 * The mirrored orientations are mapped to their rotation, the mirror is ignored.
+	 *
+	 * @param orientation The EXIF orientation, between 1 and 8
+	 * @return The rotation: 0, 90, 180 or 270
+	 */
+	public static int getRotation(final int orientation) {
+		switch (orientation) {
+		case ORIENTATION_ROTATE_180:
+		case ORIENTATION_FLIP_VERTICAL:
+			return ROTATION_180;
+		case ORIENTATION_ROTATE_90:
+		case ORIENTATION_TRANSPOSE:
+			return ROTATION_90;
+		case ORIENTATION_ROTATE_270:
+		case ORIENTATION_TRANSVERSE:
+			return ROTATION_270;
+		case ORIENTATION_FLIP_HORIZONTAL:
+		default:
+			return ROTATION_0;
+		}
+	}
+
+	public int getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return true if the format of the image cannot hold transparency
+	 */
+	public boolean isOpaque() {
+		return format == FORMAT_JPEG;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	public int getOrientation() {
+		return orientation;
+	}
+
+	public boolean hasSize() {
+		return width > 0 && height > 0;
+	}
+
+	public boolean hasOrientation() {
+		return orientation != ORIENTATION_UNDEFINED;
+	}
+
+	/**
+	 * @return The clockwise degrees that must be applied to show the image upright
+	 */
+	public int getRotation() {
+		return getRotation(orientation);
+	}
+
+	@Override
+	public String toString() {
+		return "ImageHeader{format=" + format + ", " + width + "x" + height + ", orientation=" + orientation + "}";
+	}
+}
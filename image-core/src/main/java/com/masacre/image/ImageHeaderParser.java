@@ -0,0 +1,283 @@
+package com.masacre.image;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * <p>
+ * The <code>ImageHeaderParser</code> class reads the size and the EXIF orientation of an image from the
+ * first bytes of its stream, without decoding it.
+ * </p>
+ *
+ * JPEG images are read segment by segment until the start of frame, parsing the EXIF segment on the way.
+ * PNG images are read until the header chunk. Any other format, or a stream that ends or goes over
+ * {@link #MAX_HEADER_BYTES} before the values are found, gives an {@link ImageHeader} with unknown values.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public final class ImageHeaderParser {
+	/**
+	 * The maximum amount of bytes read from the stream
+	 */
+	public static final int MAX_HEADER_BYTES = 64 * 1024;
+
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final int BYTE_MASK = 0xFF;
+	private static final int BYTE_BITS = 8;
+	private static final int JPEG_START_OF_IMAGE = 0xFFD8;
+	private static final int PNG_SIGNATURE_START = 0x8950;
+	private static final byte[] PNG_SIGNATURE_END = {0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+	private static final int PNG_IHDR = 0x49484452;
+	private static final int MARKER_PREFIX = 0xFF;
+	private static final int MARKER_TEM = 0x01;
+	private static final int MARKER_RST_FIRST = 0xD0;
+	private static final int MARKER_RST_LAST = 0xD7;
+	private static final int MARKER_SOF_FIRST = 0xC0;
+	private static final int MARKER_SOF_LAST = 0xCF;
+	private static final int MARKER_DHT = 0xC4;
+	private static final int MARKER_JPG = 0xC8;
+	private static final int MARKER_DAC = 0xCC;
+	private static final int MARKER_SOS = 0xDA;
+	private static final int MARKER_EOI = 0xD9;
+	private static final int MARKER_APP1 = 0xE1;
+	private static final int SEGMENT_LENGTH_SIZE = 2;
+	private static final byte[] EXIF_IDENTIFIER = {'E', 'x', 'i', 'f', 0, 0};
+	private static final int TIFF_LITTLE_ENDIAN = 0x4949;
+	private static final int TIFF_BIG_ENDIAN = 0x4D4D;
+	private static final int TIFF_MAGIC = 42;
+	private static final int TIFF_IFD_OFFSET_POSITION = 4;
+	private static final int IFD_ENTRY_SIZE = 12;
+	private static final int IFD_ENTRY_TYPE_POSITION = 2;
+	private static final int IFD_ENTRY_VALUE_POSITION = 8;
+	private static final int TAG_ORIENTATION = 0x0112;
+	private static final int TYPE_SHORT = 3;
+	private static final int MAX_ORIENTATION = 8;
+	private static final int SHORT_SIZE = 2;
+	private static final int INT_SIZE = 4;
+
+	private ImageHeaderParser() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Read the header of an image. The stream is read from its current position and is not closed.
+	 *
+	 * @param inputStream The stream of the image
+	 * @return The header, whose values are unknown if they cannot be read
+	 * @throws IOException if the stream cannot be read
+	 */
+	public static ImageHeader parse(final InputStream inputStream) throws IOException {
+		final LimitedReader reader = new LimitedReader(inputStream, MAX_HEADER_BYTES);
+		try {
+			final int signature = reader.readUnsignedShort();
+			if (signature == JPEG_START_OF_IMAGE) {
+				return parseJpeg(reader);
+			} else if (signature == PNG_SIGNATURE_START) {
+				return parsePng(reader);
+			}
+		} catch (final EOFException e) {
+			// The stream ended before the values were found
+		}
+		return ImageHeader.UNKNOWN;
+	}
+
+	private static ImageHeader parseJpeg(final LimitedReader reader) throws IOException {
+		int orientation = ImageHeader.ORIENTATION_UNDEFINED;
+		try {
+			while (true) {
+				if (reader.readUnsignedByte() != MARKER_PREFIX) {
+					break;
+				}
+				int marker = reader.readUnsignedByte();
+				while (marker == MARKER_PREFIX) {
+					marker = reader.readUnsignedByte();
+				}
+				if (marker == MARKER_SOS || marker == MARKER_EOI) {
+					break;
+				}
+				if (marker == MARKER_TEM || marker >= MARKER_RST_FIRST && marker <= MARKER_RST_LAST) {
+					continue;
+				}
+
+				final int length = reader.readUnsignedShort() - SEGMENT_LENGTH_SIZE;
+				if (length < 0) {
+					break;
+				}
+				if (isStartOfFrame(marker)) {
+					// Sample precision, followed by the height and the width
+					reader.readUnsignedByte();
+					final int height = reader.readUnsignedShort();
+					final int width = reader.readUnsignedShort();
+					return new ImageHeader(ImageHeader.FORMAT_JPEG, width, height, orientation);
+				}
+				if (marker == MARKER_APP1 && orientation == ImageHeader.ORIENTATION_UNDEFINED) {
+					orientation = parseExif(reader.readBytes(length));
+				} else {
+					reader.skip(length);
+				}
+			}
+		} catch (final EOFException e) {
+			// The frame was not found, but the orientation may have been
+		}
+		return new ImageHeader(ImageHeader.FORMAT_JPEG, ImageHeader.SIZE_UNKNOWN, ImageHeader.SIZE_UNKNOWN,
+				orientation);
+	}
+
+	private static boolean isStartOfFrame(final int marker) {
+		return marker >= MARKER_SOF_FIRST && marker <= MARKER_SOF_LAST && marker != MARKER_DHT
+				&& marker != MARKER_JPG && marker != MARKER_DAC;
+	}
+
+	/**
+	 * Read the orientation tag of the first image file directory of an EXIF segment
+	 *
+	 * @param segment The content of the APP1 segment
+	 * @return The orientation, or {@link ImageHeader#ORIENTATION_UNDEFINED} if it is not present
+	 */
+	public static int parseExif(final byte[] segment) {
+		if (segment.length < EXIF_IDENTIFIER.length + SHORT_SIZE * 2 + INT_SIZE) {
+			return ImageHeader.ORIENTATION_UNDEFINED;
+		}
+		for (int i = 0; i < EXIF_IDENTIFIER.length; i++) {
+			if (segment[i] != EXIF_IDENTIFIER[i]) {
+				return ImageHeader.ORIENTATION_UNDEFINED;
+			}
+		}
+
+		final int tiffStart = EXIF_IDENTIFIER.length;
+		final int byteOrder = readShort(segment, tiffStart, false);
+		if (byteOrder != TIFF_LITTLE_ENDIAN && byteOrder != TIFF_BIG_ENDIAN) {
+			return ImageHeader.ORIENTATION_UNDEFINED;
+		}
+		final boolean littleEndian = byteOrder == TIFF_LITTLE_ENDIAN;
+		if (readShort(segment, tiffStart + SHORT_SIZE, littleEndian) != TIFF_MAGIC) {
+			return ImageHeader.ORIENTATION_UNDEFINED;
+		}
+
+		final long ifdOffset = readInt(segment, tiffStart + TIFF_IFD_OFFSET_POSITION, littleEndian);
+		final long ifdStart = tiffStart + ifdOffset;
+		if (ifdOffset < 0 || ifdStart + SHORT_SIZE > segment.length) {
+			return ImageHeader.ORIENTATION_UNDEFINED;
+		}
+		final int entryCount = readShort(segment, (int) ifdStart, littleEndian);
+		for (int i = 0; i < entryCount; i++) {
+			final long entryStart = ifdStart + SHORT_SIZE + (long) i * IFD_ENTRY_SIZE;
+			if (entryStart + IFD_ENTRY_SIZE > segment.length) {
+				break;
+			}
+			final int entry = (int) entryStart;
+			if (readShort(segment, entry, littleEndian) == TAG_ORIENTATION) {
+				if (readShort(segment, entry + IFD_ENTRY_TYPE_POSITION, littleEndian) != TYPE_SHORT) {
+					break;
+				}
+				final int orientation = readShort(segment, entry + IFD_ENTRY_VALUE_POSITION, littleEndian);
+				return orientation >= 1 && orientation <= MAX_ORIENTATION ? orientation
+						: ImageHeader.ORIENTATION_UNDEFINED;
+			}
+		}
+		return ImageHeader.ORIENTATION_UNDEFINED;
+	}
+
+	private static ImageHeader parsePng(final LimitedReader reader) throws IOException {
+		final byte[] signatureEnd = reader.readBytes(PNG_SIGNATURE_END.length);
+		for (int i = 0; i < PNG_SIGNATURE_END.length; i++) {
+			if (signatureEnd[i] != PNG_SIGNATURE_END[i]) {
+				return ImageHeader.UNKNOWN;
+			}
+		}
+		// The header chunk is always the first one: length, type, width and height
+		reader.skip(INT_SIZE);
+		if (reader.readInt() != PNG_IHDR) {
+			return ImageHeader.UNKNOWN;
+		}
+		final int width = reader.readInt();
+		final int height = reader.readInt();
+		return new ImageHeader(ImageHeader.FORMAT_PNG, width, height, ImageHeader.ORIENTATION_UNDEFINED);
+	}
+
+	private static int readShort(final byte[] data, final int position, final boolean littleEndian) {
+		final int first = data[position] & BYTE_MASK;
+		final int second = data[position + 1] & BYTE_MASK;
+		return littleEndian ? second << BYTE_BITS | first : first << BYTE_BITS | second;
+	}
+
+	private static long readInt(final byte[] data, final int position, final boolean littleEndian) {
+		if (position + INT_SIZE > data.length) {
+			return -1;
+		}
+		final long first = readShort(data, position, littleEndian);
+		final long second = readShort(data, position + SHORT_SIZE, littleEndian);
+		return littleEndian ? second << (BYTE_BITS * 2) | first : first << (BYTE_BITS * 2) | second;
+	}
+
+	/**
+	 * Big endian reader that fails with an {@link EOFException} when the stream ends or the limit is reached
+	 */
+	private static final class LimitedReader {
+		private final InputStream inputStream;
+		private int remaining;
+
+		/* default */ LimitedReader(final InputStream inputStream, final int limit) {
+			this.inputStream = inputStream;
+			this.remaining = limit;
+		}
+
+		/* default */ int readUnsignedByte() throws IOException {
+			if (remaining <= 0) {
+				throw new EOFException();
+			}
+			final int value = inputStream.read();
+			if (value < 0) {
+				throw new EOFException();
+			}
+			remaining--;
+			return value;
+		}
+
+		/* default */ int readUnsignedShort() throws IOException {
+			return readUnsignedByte() << BYTE_BITS | readUnsignedByte();
+		}
+
+		/* default */ int readInt() throws IOException {
+			return readUnsignedShort() << (BYTE_BITS * 2) | readUnsignedShort();
+		}
+
+		/* default */ byte[] readBytes(final int count) throws IOException {
+			if (count > remaining) {
+				throw new EOFException();
+			}
+			final byte[] bytes = new byte[count];
+			int offset = 0;
+			while (offset < count) {
+				final int read = inputStream.read(bytes, offset, count - offset);
+				if (read < 0) {
+					throw new EOFException();
+				}
+				offset += read;
+			}
+			remaining -= count;
+			return bytes;
+		}
+
+		/* default */ void skip(final int count) throws IOException {
+			if (count > remaining) {
+				throw new EOFException();
+			}
+			int left = count;
+			while (left > 0) {
+				final long skipped = inputStream.skip(left);
+				if (skipped <= 0) {
+					// Some streams cannot skip, fall back to reading
+					readUnsignedByte();
+					remaining++;
+					left--;
+				} else {
+					left -= skipped;
+				}
+			}
+			remaining -= count;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package com.masacre.image;
+
+/**
+ * <p>
+ * The <code>ImageSizing</code> class holds the size math of the decode pipeline: the scale that
+ * takes an image to its target size, the power of two sample size used to decode it and the size
+ * of the image once it is rotated upright.
+ * </p>
+ *
+ * A target dimension lower or equal than zero does not constrain the image.
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public final class ImageSizing {
+	private static final String UTILITY_CLASS_ERROR = "This class cannot be instantiated";
+	private static final int ROTATION_90 = 90;
+	private static final int ROTATION_270 = 270;
+
+	private ImageSizing() {
+		throw new IllegalAccessError(UTILITY_CLASS_ERROR);
+	}
+
+	/**
+	 * Calculate the scale that takes the source size to the target size. When the image must cover
+	 * the target the biggest of both axis scales is used, otherwise it must fit inside and the smallest is used.
+	 *
+	 * @param srcWidth The width of the source image
+	 * @param srcHeight The height of the source image
+	 * @param targetWidth The target width, or zero if it is not constrained
+	 * @param targetHeight The target height, or zero if it is not constrained
+	 * @param cover true if the image must cover the target, false if it must fit inside it
+	 * @return The scale to apply, 1 if no dimension is constrained
+	 */
+	public static float calculateScale(final int srcWidth, final int srcHeight, final int targetWidth,
+			final int targetHeight, final boolean cover) {
+		final boolean hasWidth = targetWidth > 0;
+		final boolean hasHeight = targetHeight > 0;
+		if (!hasWidth && !hasHeight) {
+			return 1f;
+		}
+		final float widthScale = (float) targetWidth / srcWidth;
+		final float heightScale = (float) targetHeight / srcHeight;
+		if (!hasHeight) {
+			return widthScale;
+		}
+		if (!hasWidth) {
+			return heightScale;
+		}
+		return cover ? Math.max(widthScale, heightScale) : Math.min(widthScale, heightScale);
+	}
+
+	/**
+	 * Calculate the largest power of two sample size that keeps the decoded image equal or bigger
+	 * than the size given by {@link #calculateScale(int, int, int, int, boolean)}
+	 *
+	 * @param srcWidth The width of the source image
+	 * @param srcHeight The height of the source image
+	 * @param targetWidth The target width, or zero if it is not constrained
+	 * @param targetHeight The target height, or zero if it is not constrained
+	 * @param cover true if the image must cover the target, false if it must fit inside it
+	 * @return The sample size, always a power of two
+	 */
+	public static int calculateSampleSize(final int srcWidth, final int srcHeight, final int targetWidth,
+			final int targetHeight, final boolean cover) {
+		final float scale = Math.min(1f, calculateScale(srcWidth, srcHeight, targetWidth, targetHeight, cover));
+		final int minWidth = (int) Math.ceil(srcWidth * scale);
+		final int minHeight = (int) Math.ceil(srcHeight * scale);
+
+		int sampleSize = 1;
+		while (srcWidth / (sampleSize * 2) >= minWidth && srcHeight / (sampleSize * 2) >= minHeight) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * Get the sample size that decodes an image with at least the given scale
+	 *
+	 * @param scale The ratio between the shown size and the size of the image
+	 * @return The largest power of two that is not greater than the inverse of the scale
+	 */
+	public static int calculateSampleSize(final float scale) {
+		int sampleSize = 1;
+		while (sampleSize * 2 * scale <= 1f) {
+			sampleSize *= 2;
+		}
+		return sampleSize;
+	}
+
+	/**
+	 * Get the side of an image decoded with the given sample size. The decoder rounds up.
+	 *
+	 * @param side The side of the source image
+	 * @param sampleSize The sample size of the decode
+	 * @return The side of the decoded image
+	 */
+	public static int getSampledSide(final int side, final int sampleSize) {
+		return (side + sampleSize - 1) / sampleSize;
+	}
+
+	/**
+	 * @param rotation The clockwise degrees, a multiple of 90
+	 * @return true if the rotation swaps the width and the height of the image
+	 */
+	public static boolean isAxisSwapped(final int rotation) {
+		return rotation == ROTATION_90 || rotation == ROTATION_270;
+	}
+
+	public static int getRotatedWidth(final int width, final int height, final int rotation) {
+		return isAxisSwapped(rotation) ? height : width;
+	}
+
+	public static int getRotatedHeight(final int width, final int height, final int rotation) {
+		return isAxisSwapped(rotation) ? width : height;
+	}
+}
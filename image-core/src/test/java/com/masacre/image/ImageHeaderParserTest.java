@@ -0,0 +1,288 @@
+package com.masacre.image;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+/**
+ * <p>
+ * The <code>ImageHeaderParserTest</code> class parses JPEG and PNG headers built in memory, in both EXIF byte
+ * orders, and checks that truncated or too long headers give unknown values instead of failing.
+ * </p>
+ *
+ * @author Martin Purita - martinpurita@gmail.com
+ *
+ */
+public class ImageHeaderParserTest {
+	private static final int WIDTH = 4032;
+	private static final int HEIGHT = 3024;
+	private static final int MAX_ORIENTATION = 8;
+	private static final int ORIENTATION_ROTATE_180 = 3;
+	private static final int ORIENTATION_ROTATE_90 = 6;
+	private static final int MARKER_SOI = 0xFFD8;
+	private static final int MARKER_APP1 = 0xFFE1;
+	private static final int MARKER_APP2 = 0xFFE2;
+	private static final int MARKER_SOF0 = 0xFFC0;
+	private static final int MARKER_SOS = 0xFFDA;
+	private static final int MAX_SEGMENT_LENGTH = 0xFFFF;
+	private static final int SEGMENT_LENGTH_SIZE = 2;
+	private static final int FRAME_LENGTH = 17;
+	/**
+	 * The bytes of the start of frame read by the parser: marker, length, precision, height and width
+	 */
+	private static final int FRAME_READ_BYTES = 9;
+	private static final int PRECISION = 8;
+	private static final int COMPONENTS = 3;
+	private static final byte[] EXIF_IDENTIFIER = {'E', 'x', 'i', 'f', 0, 0};
+	private static final int TIFF_LITTLE_ENDIAN = 0x4949;
+	private static final int TIFF_BIG_ENDIAN = 0x4D4D;
+	private static final int TIFF_MAGIC = 42;
+	private static final int TIFF_HEADER_SIZE = 8;
+	private static final int TAG_ORIENTATION = 0x0112;
+	private static final int TAG_MAKE = 0x010F;
+	private static final int TYPE_ASCII = 2;
+	private static final int TYPE_SHORT = 3;
+	private static final int MAKE_LENGTH = 8;
+	private static final int MAKE_OFFSET = 38;
+	private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A};
+	private static final int PNG_IHDR_LENGTH = 13;
+	private static final int PNG_IHDR = 0x49484452;
+	private static final int PNG_CRC_SIZE = 4;
+	private static final int INT_SIZE = 4;
+	private static final int BYTE_MASK = 0xFF;
+	private static final int BYTE_BITS = 8;
+
+	@Test
+	public void jpegSizeIsReadFromTheStartOfFrame() throws IOException {
+		final ImageHeader header = parse(createJpeg(null, 0));
+
+		assertEquals(ImageHeader.FORMAT_JPEG, header.getFormat());
+		assertEquals(WIDTH, header.getWidth());
+		assertEquals(HEIGHT, header.getHeight());
+		assertEquals(ImageHeader.ORIENTATION_UNDEFINED, header.getOrientation());
+	}
+
+	@Test
+	public void exifOrientationIsReadInBigEndian() throws IOException {
+		for (int orientation = 1; orientation <= MAX_ORIENTATION; orientation++) {
+			final ImageHeader header = parse(createJpeg(createExif(orientation, false), 0));
+
+			assertEquals(orientation, header.getOrientation());
+			assertEquals(WIDTH, header.getWidth());
+			assertEquals(HEIGHT, header.getHeight());
+		}
+	}
+
+	@Test
+	public void exifOrientationIsReadInLittleEndian() throws IOException {
+		for (int orientation = 1; orientation <= MAX_ORIENTATION; orientation++) {
+			final ImageHeader header = parse(createJpeg(createExif(orientation, true), 0));
+
+			assertEquals(orientation, header.getOrientation());
+			assertEquals(WIDTH, header.getWidth());
+			assertEquals(HEIGHT, header.getHeight());
+		}
+	}
+
+	@Test
+	public void exifOrientationIsFoundAfterOtherEntries() {
+		assertEquals(ORIENTATION_ROTATE_90, ImageHeaderParser.parseExif(createExif(ORIENTATION_ROTATE_90, true, true)));
+		assertEquals(ORIENTATION_ROTATE_90,
+				ImageHeaderParser.parseExif(createExif(ORIENTATION_ROTATE_90, false, true)));
+	}
+
+	@Test
+	public void invalidExifOrientationIsUndefined() {
+		assertEquals(ImageHeader.ORIENTATION_UNDEFINED, ImageHeaderParser.parseExif(createExif(0, false)));
+		assertEquals(ImageHeader.ORIENTATION_UNDEFINED,
+				ImageHeaderParser.parseExif(createExif(MAX_ORIENTATION + 1, true)));
+	}
+
+	@Test
+	public void pngSizeIsReadFromTheHeaderChunk() throws IOException {
+		final ImageHeader header = parse(createPng());
+
+		assertEquals(ImageHeader.FORMAT_PNG, header.getFormat());
+		assertEquals(WIDTH, header.getWidth());
+		assertEquals(HEIGHT, header.getHeight());
+		assertEquals(ImageHeader.ORIENTATION_UNDEFINED, header.getOrientation());
+	}
+
+	@Test
+	public void truncatedJpegHasNoSize() throws IOException {
+		final byte[] jpeg = createJpeg(createExif(ORIENTATION_ROTATE_90, true), 0);
+		// The width is the last value of the frame that the parser reads
+		final int frameEnd = jpeg.length - SEGMENT_LENGTH_SIZE - 1 - COMPONENTS * COMPONENTS;
+		for (int length = 0; length < frameEnd; length++) {
+			assertFalse("Length " + length, parse(Arrays.copyOf(jpeg, length)).hasSize());
+		}
+		assertEquals(WIDTH, parse(Arrays.copyOf(jpeg, frameEnd)).getWidth());
+	}
+
+	@Test
+	public void truncatedJpegKeepsTheOrientationReadBeforeTheFrame() throws IOException {
+		final byte[] exif = createExif(ORIENTATION_ROTATE_90, false);
+		final byte[] jpeg = createJpeg(exif, 0);
+		// The start of image, the marker and the length of the EXIF segment and its content
+		final int exifEnd = SEGMENT_LENGTH_SIZE * 3 + exif.length;
+
+		final ImageHeader header = parse(Arrays.copyOf(jpeg, exifEnd));
+
+		assertEquals(ImageHeader.FORMAT_JPEG, header.getFormat());
+		assertEquals(ORIENTATION_ROTATE_90, header.getOrientation());
+		assertFalse(header.hasSize());
+	}
+
+	@Test
+	public void truncatedPngHasNoSize() throws IOException {
+		final byte[] png = createPng();
+		// The signature, then the length, the type, the width and the height of the header chunk
+		final int sizeEnd = PNG_SIGNATURE.length + INT_SIZE * 4;
+		for (int length = 0; length < sizeEnd; length++) {
+			assertFalse("Length " + length, parse(Arrays.copyOf(png, length)).hasSize());
+		}
+		assertEquals(HEIGHT, parse(Arrays.copyOf(png, sizeEnd)).getHeight());
+	}
+
+	@Test
+	public void startOfFrameEndingAtTheWindowIsRead() throws IOException {
+		final byte[] jpeg = createJpeg(null, getPaddingToWindowEnd());
+
+		assertEquals(WIDTH, parse(jpeg).getWidth());
+		assertEquals(HEIGHT, parse(jpeg).getHeight());
+	}
+
+	@Test
+	public void startOfFramePastTheWindowIsUnknown() throws IOException {
+		final ImageHeader header = parse(createJpeg(null, getPaddingToWindowEnd() + 1));
+
+		assertEquals(ImageHeader.FORMAT_JPEG, header.getFormat());
+		assertEquals(ImageHeader.SIZE_UNKNOWN, header.getWidth());
+		assertEquals(ImageHeader.SIZE_UNKNOWN, header.getHeight());
+	}
+
+	@Test
+	public void startOfFramePastTheWindowKeepsTheOrientation() throws IOException {
+		final ImageHeader header = parse(createJpeg(createExif(ORIENTATION_ROTATE_180, true),
+				ImageHeaderParser.MAX_HEADER_BYTES));
+
+		assertFalse(header.hasSize());
+		assertEquals(ORIENTATION_ROTATE_180, header.getOrientation());
+	}
+
+	@Test
+	public void otherFormatsAreUnknown() throws IOException {
+		assertSame(ImageHeader.UNKNOWN, parse(new byte[]{'G', 'I', 'F', '8', '9', 'a'}));
+		assertSame(ImageHeader.UNKNOWN, parse(new byte[0]));
+	}
+
+	private static ImageHeader parse(final byte[] bytes) throws IOException {
+		return ImageHeaderParser.parse(new ByteArrayInputStream(bytes));
+	}
+
+	/**
+	 * The content of a single padding segment after which the values of the frame end at the last byte of the
+	 * window: the start of image, the marker and the length of the segment, and the frame
+	 */
+	private static int getPaddingToWindowEnd() {
+		return ImageHeaderParser.MAX_HEADER_BYTES - SEGMENT_LENGTH_SIZE - SEGMENT_LENGTH_SIZE * 2 - FRAME_READ_BYTES;
+	}
+
+	/**
+	 * Build a JPEG header: the optional EXIF segment, application segments with the given amount of content bytes
+	 * and the start of frame
+	 */
+	private static byte[] createJpeg(final byte[] exif, final int paddingBytes) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		writeShort(output, MARKER_SOI, false);
+		if (exif != null) {
+			writeShort(output, MARKER_APP1, false);
+			writeShort(output, exif.length + SEGMENT_LENGTH_SIZE, false);
+			output.write(exif, 0, exif.length);
+		}
+
+		int remaining = paddingBytes;
+		while (remaining > 0) {
+			final int length = Math.min(remaining, MAX_SEGMENT_LENGTH - SEGMENT_LENGTH_SIZE);
+			writeShort(output, MARKER_APP2, false);
+			writeShort(output, length + SEGMENT_LENGTH_SIZE, false);
+			output.write(new byte[length], 0, length);
+			remaining -= length;
+		}
+
+		writeShort(output, MARKER_SOF0, false);
+		writeShort(output, FRAME_LENGTH, false);
+		output.write(PRECISION);
+		writeShort(output, HEIGHT, false);
+		writeShort(output, WIDTH, false);
+		output.write(COMPONENTS);
+		output.write(new byte[COMPONENTS * COMPONENTS], 0, COMPONENTS * COMPONENTS);
+		writeShort(output, MARKER_SOS, false);
+		return output.toByteArray();
+	}
+
+	private static byte[] createExif(final int orientation, final boolean littleEndian) {
+		return createExif(orientation, littleEndian, false);
+	}
+
+	/**
+	 * Build the content of an APP1 segment whose first directory has the orientation entry, after a make entry
+	 * whose value is stored out of the entry when asked
+	 */
+	private static byte[] createExif(final int orientation, final boolean littleEndian, final boolean withMake) {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(EXIF_IDENTIFIER, 0, EXIF_IDENTIFIER.length);
+		writeShort(output, littleEndian ? TIFF_LITTLE_ENDIAN : TIFF_BIG_ENDIAN, false);
+		writeShort(output, TIFF_MAGIC, littleEndian);
+		writeInt(output, TIFF_HEADER_SIZE, littleEndian);
+		writeShort(output, withMake ? 2 : 1, littleEndian);
+		if (withMake) {
+			writeShort(output, TAG_MAKE, littleEndian);
+			writeShort(output, TYPE_ASCII, littleEndian);
+			writeInt(output, MAKE_LENGTH, littleEndian);
+			writeInt(output, MAKE_OFFSET, littleEndian);
+		}
+		writeShort(output, TAG_ORIENTATION, littleEndian);
+		writeShort(output, TYPE_SHORT, littleEndian);
+		writeInt(output, 1, littleEndian);
+		writeShort(output, orientation, littleEndian);
+		writeShort(output, 0, littleEndian);
+		// No next image file directory
+		writeInt(output, 0, littleEndian);
+		return output.toByteArray();
+	}
+
+	private static byte[] createPng() {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		output.write(PNG_SIGNATURE, 0, PNG_SIGNATURE.length);
+		writeInt(output, PNG_IHDR_LENGTH, false);
+		writeInt(output, PNG_IHDR, false);
+		writeInt(output, WIDTH, false);
+		writeInt(output, HEIGHT, false);
+		// Bit depth, color type, compression, filter, interlace and the checksum
+		final int rest = PNG_IHDR_LENGTH - INT_SIZE * 2 + PNG_CRC_SIZE;
+		output.write(new byte[rest], 0, rest);
+		return output.toByteArray();
+	}
+
+	private static void writeShort(final ByteArrayOutputStream output, final int value, final boolean littleEndian) {
+		final int high = value >> BYTE_BITS & BYTE_MASK;
+		final int low = value & BYTE_MASK;
+		output.write(littleEndian ? low : high);
+		output.write(littleEndian ? high : low);
+	}
+
+	private static void writeInt(final ByteArrayOutputStream output, final int value, final boolean littleEndian) {
+		final int high = value >>> (BYTE_BITS * 2);
+		final int low = value & (BYTE_MASK << BYTE_BITS | BYTE_MASK);
+		writeShort(output, littleEndian ? low : high, littleEndian);
+		writeShort(output, littleEndian ? high : low, littleEndian);
+	}
+}